@@ -0,0 +1,366 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import com.github.mesharel.emoji.Emoji;
+import com.github.mesharel.emoji.EmojiHistogram;
+import com.github.mesharel.emoji.EmojiPipeline;
+import com.github.mesharel.emoji.EmojiProcessor;
+import com.github.mesharel.emoji.ExtractedEmoji;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 使用固定大小的线程池批量处理文件<br>
+ *
+ * 主线程按顺序读取文件, 每 {@code batchSize} 行作为一个批次提交到线程池, 并按提交顺序写出已完成的批次,
+ * 因此每个文件的输出顺序与输入相同. 线程池的队列与未写出的批次数量都有上限, 内存占用与文件大小无关<br>
+ *
+ * 读取时使用 {@link FileChannel}, 无法解码的字节替换为 U+FFFD. 输出的行以 {@code \n} 结尾
+ */
+final class BatchProcessor {
+    private final EmojiProcessor processor;
+    private final EmojiPipeline stripper;
+    private final Options options;
+    /** 最多未写出的批次数量 */
+    private final int window;
+    /** 所有批次的统计结果, 只用于 {@link Command#STATS} */
+    private final EmojiHistogram histogram;
+
+    BatchProcessor(EmojiProcessor processor, Options options) {
+        this.processor = processor;
+        this.stripper = processor.pipeline();
+        this.options = options;
+        this.window = options.getThreads() * 4;
+        this.histogram = processor.createHistogram(options.isFoldSkinTone());
+    }
+
+    /**
+     * 处理所有输入文件
+     *
+     * @param stdout 标准输出, 不会被关闭
+     * @return 处理结果统计
+     * @throws IOException 读取或写入时发生错误
+     */
+    Report run(OutputStream stdout) throws IOException {
+        long start = System.nanoTime();
+        List<Input> inputs = resolve();
+        Command command = this.options.getCommand();
+        int bufferSize = this.options.getBufferSize();
+        Writer console = command == Command.STATS || this.options.getOutput() == null
+            ? new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8), bufferSize)
+            : null;
+
+        // 队列已满时由主线程执行批次, 同时限制了读取速度
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            this.options.getThreads(), this.options.getThreads(), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(this.options.getThreads() * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        ArrayDeque<Pending> pending = new ArrayDeque<>();
+        List<Closeable> opened = new ArrayList<>();
+        long lines = 0;
+        long bytes = 0;
+        Throwable failure = null;
+
+        try {
+            for (Input input : inputs) {
+                Writer writer = command == Command.STATS ? null : console != null ? console : open(input, opened);
+                try (FileChannel channel = FileChannel.open(input.path, StandardOpenOption.READ);
+                     BufferedReader reader = new BufferedReader(Channels.newReader(channel, decoder(), bufferSize), bufferSize)) {
+                    bytes += channel.size();
+
+                    List<String> batch = new ArrayList<>(this.options.getBatchSize());
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        batch.add(line);
+                        lines++;
+                        if (batch.size() == this.options.getBatchSize()) {
+                            submit(workers, pending, batch, writer, false);
+                            batch = new ArrayList<>(this.options.getBatchSize());
+                        }
+                    }
+                    submit(workers, pending, batch, writer, writer != console);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                complete(pending.poll());
+            }
+
+            if (command == Command.STATS && console != null) {
+                writeStats(console);
+            }
+            if (console != null) {
+                console.flush();
+            }
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            workers.shutdownNow();
+            IOException closeFailure = closeAll(opened, failure);
+            if (failure == null && closeFailure != null) {
+                throw closeFailure;
+            }
+        }
+
+        return new Report(inputs.size(), lines, bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * 关闭所有输出文件, 一个文件关闭失败不影响其他文件<br>
+     *
+     * 关闭时的异常添加到 {@code failure} 中; {@code failure} 为 {@literal null} 时返回第一个异常,
+     * 之后的异常添加到第一个异常中
+     *
+     * @param failure 处理时发生的异常, 可以为 {@literal null}
+     * @return 关闭时的第一个异常, 没有异常或已添加到 {@code failure} 时返回 {@literal null}
+     */
+    private static IOException closeAll(List<Closeable> opened, Throwable failure) {
+        IOException first = null;
+        for (Closeable closeable : opened) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+
+        return first;
+    }
+
+    private void submit(ThreadPoolExecutor workers, ArrayDeque<Pending> pending,
+                        List<String> batch, Writer writer, boolean last) throws IOException {
+        pending.add(new Pending(workers.submit(() -> process(batch)), writer, last));
+        while (pending.size() > this.window) {
+            complete(pending.poll());
+        }
+    }
+
+    /**
+     * 等待批次完成并写出结果
+     */
+    private static void complete(Pending pending) throws IOException {
+        String text;
+        try {
+            text = pending.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for batch");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // 包装后保留主线程的调用栈
+            throw new IOException(cause.getMessage(), cause);
+        }
+
+        if (pending.writer == null) {
+            return;
+        }
+
+        pending.writer.write(text);
+        if (pending.last) {
+            pending.writer.close();
+        }
+    }
+
+    /**
+     * 在工作线程中处理一个批次
+     *
+     * @return 输出的文本, {@link Command#STATS} 返回空字符串
+     */
+    private String process(List<String> batch) throws IOException {
+        Command command = this.options.getCommand();
+        if (command == Command.STATS) {
+            EmojiHistogram local = this.processor.createHistogram(this.options.isFoldSkinTone());
+            for (String line : batch) {
+                this.processor.countEmojis(line, local);
+            }
+            synchronized (this.histogram) {
+                this.histogram.merge(local);
+            }
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(batch.size() * 64);
+        for (String line : batch) {
+            switch (command) {
+                case EXTRACT:
+                    List<ExtractedEmoji> extracts = this.processor.extract(line);
+                    for (int i = 0; i < extracts.size(); i++) {
+                        if (i > 0) {
+                            sb.append(' ');
+                        }
+                        sb.append(extracts.get(i).getEmoji());
+                    }
+                    break;
+                case REPLACE:
+                    sb.append(this.processor.replaceByAlias(line));
+                    break;
+                case STRIP:
+                    this.stripper.process(line, null, sb, null);
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected command: " + command);
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private void writeStats(Writer writer) throws IOException {
+        for (Map.Entry<Emoji, Long> entry : this.histogram.topK(this.options.getTop())) {
+            Emoji emoji = entry.getKey();
+            writer.write(entry.getValue().toString());
+            writer.write('\t');
+            writer.write(emoji.getEmoji());
+            if (!emoji.getAliases().isEmpty()) {
+                writer.write("\t:");
+                writer.write(emoji.getAliases().get(0));
+                writer.write(':');
+            }
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 展开输入目录, 并按路径排序<br>
+     *
+     * 指定了输出目录时, 两个输入文件对应同一个输出文件会抛出异常, 例如 {@code a/x.txt} 与 {@code b/x.txt}
+     */
+    private List<Input> resolve() throws IOException {
+        List<Input> inputs = new ArrayList<>();
+        for (Path path : this.options.getInputs()) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    for (Path file : walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                        inputs.add(new Input(file, path.relativize(file)));
+                    }
+                }
+            } else if (Files.isRegularFile(path)) {
+                inputs.add(new Input(path, path.getFileName()));
+            } else {
+                throw new IOException("no such file: " + path);
+            }
+        }
+
+        if (this.options.getOutput() != null && this.options.getCommand() != Command.STATS) {
+            Map<String, Path> targets = new HashMap<>();
+            for (Input input : inputs) {
+                Path previous = targets.putIfAbsent(input.relative.normalize().toString(), input.path);
+                if (previous != null) {
+                    throw new IOException("output conflict: " + previous + " and " + input.path
+                        + " would both be written to " + input.relative);
+                }
+            }
+        }
+
+        return inputs;
+    }
+
+    /**
+     * 在输出目录中创建与输入文件相对路径相同的文件
+     */
+    private Writer open(Input input, List<Closeable> opened) throws IOException {
+        Path target = this.options.getOutput().resolve(input.relative.toString());
+        if (target.toAbsolutePath().normalize().equals(input.path.toAbsolutePath().normalize())) {
+            throw new IOException("output would overwrite input: " + input.path);
+        }
+
+        Path parent = target.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        FileChannel channel = FileChannel.open(target,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new BufferedWriter(
+            Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), this.options.getBufferSize()),
+            this.options.getBufferSize());
+        opened.add(writer);
+        return writer;
+    }
+
+    private static CharsetDecoder decoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static final class Input {
+        private final Path path;
+        /** 相对于输入目录的路径, 用于确定输出文件 */
+        private final Path relative;
+
+        Input(Path path, Path relative) {
+            this.path = path;
+            this.relative = relative;
+        }
+    }
+
+    private static final class Pending {
+        private final Future<String> result;
+        /** 为 {@literal null} 时丢弃结果 */
+        private final Writer writer;
+        /** 是否为文件的最后一个批次, 写出后关闭 {@link #writer} */
+        private final boolean last;
+
+        Pending(Future<String> result, Writer writer, boolean last) {
+            this.result = result;
+            this.writer = writer;
+            this.last = last;
+        }
+    }
+}
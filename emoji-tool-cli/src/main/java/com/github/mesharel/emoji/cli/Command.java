@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import java.util.Locale;
+
+/**
+ * 命令行子命令
+ */
+enum Command {
+    /** 每行输出该行中的所有 emoji, 以空格分隔 */
+    EXTRACT,
+    /** 将 {@code :alias:} 替换为 emoji */
+    REPLACE,
+    /** 删除所有 emoji */
+    STRIP,
+    /** 统计所有文件中每个 emoji 的出现次数 */
+    STATS;
+
+    /**
+     * @param name 子命令名称, 不区分大小写
+     * @return 子命令
+     * @throws IllegalArgumentException 未知的子命令
+     */
+    static Command of(String name) {
+        for (Command command : values()) {
+            if (command.name().equalsIgnoreCase(name)) {
+                return command;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown command: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import com.github.mesharel.emoji.Emoji;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbException;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从本地文件加载 emoji 数据, 格式与 {@code emoji.json} 相同
+ */
+final class Dataset {
+    private static final Type TYPE = new ArrayList<Map<String, Object>>() {}.getClass().getGenericSuperclass();
+
+    private Dataset() {}
+
+    /**
+     * @param path 数据文件
+     * @return emoji 列表
+     * @throws IOException 读取失败或格式错误
+     */
+    static List<Emoji> load(Path path) throws IOException {
+        List<Map<String, Object>> all;
+        Jsonb jsonb = JsonbBuilder.create();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            all = jsonb.fromJson(reader, TYPE);
+        } catch (JsonbException e) {
+            throw new IOException("invalid dataset " + path + ": " + e.getMessage(), e);
+        } finally {
+            close(jsonb);
+        }
+
+        if (all == null) {
+            throw new IOException("invalid dataset " + path + ": empty");
+        }
+
+        List<Emoji> emojis = new ArrayList<>(all.size());
+        for (int i = 0; i < all.size(); i++) {
+            Map<String, Object> map = all.get(i);
+            if (map == null) {
+                throw new IOException("invalid dataset " + path + ": entry " + i + " is not an object");
+            }
+
+            Object emoji = map.get("emoji");
+            if (!(emoji instanceof String) || ((String) emoji).isEmpty()) {
+                throw new IOException("invalid dataset " + path + ": entry " + i + " has no emoji");
+            }
+
+            Object skinTones = map.getOrDefault("skin_tones", false);
+            if (!(skinTones instanceof Boolean)) {
+                throw invalid(path, i, "skin_tones", "a boolean");
+            }
+
+            emojis.add(new Emoji(
+                (String) emoji,
+                strings(map, "aliases", path, i),
+                strings(map, "tags", path, i),
+                (Boolean) skinTones,
+                string(map, "category", path, i),
+                string(map, "unicode_version", path, i)
+            ));
+        }
+
+        return emojis;
+    }
+
+    /**
+     * @return 字符串数组字段, 不存在时返回空列表
+     */
+    private static List<String> strings(Map<String, Object> map, String field, Path path, int i) throws IOException {
+        Object value = map.get(field);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw invalid(path, i, field, "an array of strings");
+        }
+
+        List<?> list = (List<?>) value;
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object element : list) {
+            if (!(element instanceof String)) {
+                throw invalid(path, i, field, "an array of strings");
+            }
+            strings.add((String) element);
+        }
+
+        return strings;
+    }
+
+    /**
+     * @return 字符串字段, 不存在时返回 {@literal null}
+     */
+    private static String string(Map<String, Object> map, String field, Path path, int i) throws IOException {
+        Object value = map.get(field);
+        if (value != null && !(value instanceof String)) {
+            throw invalid(path, i, field, "a string");
+        }
+
+        return (String) value;
+    }
+
+    private static IOException invalid(Path path, int i, String field, String expected) {
+        return new IOException("invalid dataset " + path + ": entry " + i + " field " + field + " must be " + expected);
+    }
+
+    private static void close(Jsonb jsonb) throws IOException {
+        try {
+            jsonb.close();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
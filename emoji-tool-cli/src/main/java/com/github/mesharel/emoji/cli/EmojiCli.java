@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import com.github.mesharel.emoji.EmojiProcessor;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 批量处理文件的命令行工具<br>
+ *
+ * <pre>
+ * emoji-tool replace --dataset emoji.json --output out/ exports/
+ * emoji-tool stats --dataset emoji.json --top 20 messages.jsonl
+ * </pre>
+ *
+ * 只读取本地的 emoji 数据文件, 不需要网络. 处理完成后在标准错误输出吞吐量
+ */
+public final class EmojiCli {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    private EmojiCli() {}
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * @param args 命令行参数
+     * @param out 标准输出
+     * @param err 标准错误
+     * @return 退出码
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("error: " + e.getMessage());
+            err.println(Options.USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (options.isHelp()) {
+            out.println(Options.USAGE);
+            return EXIT_OK;
+        }
+
+        try {
+            EmojiProcessor processor = new EmojiProcessor(Dataset.load(options.getDataset()));
+            Report report = new BatchProcessor(processor, options).run(out);
+            out.flush();
+            err.println(options.getCommand() + ": " + report);
+            return EXIT_OK;
+        } catch (IOException | UncheckedIOException e) {
+            err.println("error: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+}
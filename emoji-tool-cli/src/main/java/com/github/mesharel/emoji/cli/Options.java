@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 命令行参数
+ */
+final class Options {
+    static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: emoji-tool <extract|replace|strip|stats> --dataset <file> [options] <file|directory>...",
+        "",
+        "Options:",
+        "  -d, --dataset <file>    emoji dataset in the emoji.json format (required)",
+        "  -o, --output <dir>      write one output file per input into <dir>, default standard output",
+        "  -t, --threads <n>       number of worker threads, default available processors",
+        "  -b, --batch <n>         lines per batch, default 4096",
+        "      --buffer <bytes>    read and write buffer size, default 1048576",
+        "      --top <n>           stats: number of emoji to print, default 100",
+        "      --fold-skin-tone    stats: count skin tone variants together",
+        "  -h, --help              print this help",
+        "",
+        "Input files are read as UTF-8 lines, directories are walked recursively.",
+        "Statistics are always written to standard output.");
+
+    private Command command;
+    private Path dataset;
+    private Path output;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 1 << 12;
+    private int bufferSize = 1 << 20;
+    private int top = 100;
+    private boolean foldSkinTone;
+    private boolean help;
+    private final List<Path> inputs = new ArrayList<>();
+
+    private Options() {}
+
+    /**
+     * @param args 命令行参数
+     * @return 解析结果
+     * @throws IllegalArgumentException 参数错误
+     */
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    options.help = true;
+                    return options;
+                case "-d":
+                case "--dataset":
+                    options.dataset = Paths.get(value(args, ++i, arg));
+                    break;
+                case "-o":
+                case "--output":
+                    options.output = Paths.get(value(args, ++i, arg));
+                    break;
+                case "-t":
+                case "--threads":
+                    options.threads = positive(args, ++i, arg);
+                    break;
+                case "-b":
+                case "--batch":
+                    options.batchSize = positive(args, ++i, arg);
+                    break;
+                case "--buffer":
+                    options.bufferSize = positive(args, ++i, arg);
+                    break;
+                case "--top":
+                    options.top = positive(args, ++i, arg);
+                    break;
+                case "--fold-skin-tone":
+                    options.foldSkinTone = true;
+                    break;
+                default:
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("unknown option: " + arg);
+                    }
+                    if (options.command == null) {
+                        options.command = Command.of(arg);
+                    } else {
+                        options.inputs.add(Paths.get(arg));
+                    }
+            }
+        }
+
+        if (options.command == null) {
+            throw new IllegalArgumentException("missing command");
+        }
+        if (options.dataset == null) {
+            throw new IllegalArgumentException("missing --dataset");
+        }
+        if (options.inputs.isEmpty()) {
+            throw new IllegalArgumentException("missing input files");
+        }
+
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + option);
+        }
+
+        return args[index];
+    }
+
+    private static int positive(String[] args, int index, String option) {
+        String value = value(args, index, option);
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid value for " + option + ": " + value);
+        }
+        if (n <= 0) {
+            throw new IllegalArgumentException(option + " must be positive");
+        }
+
+        return n;
+    }
+
+    Command getCommand() {
+        return command;
+    }
+
+    Path getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return 输出目录, 输出到标准输出时为 {@literal null}
+     */
+    Path getOutput() {
+        return output;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    int getTop() {
+        return top;
+    }
+
+    boolean isFoldSkinTone() {
+        return foldSkinTone;
+    }
+
+    boolean isHelp() {
+        return help;
+    }
+
+    List<Path> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", Options.class.getSimpleName() + "[", "]")
+            .add("command=" + command)
+            .add("dataset=" + dataset)
+            .add("output=" + output)
+            .add("threads=" + threads)
+            .add("batchSize=" + batchSize)
+            .add("bufferSize=" + bufferSize)
+            .add("inputs=" + inputs)
+            .toString();
+    }
+}
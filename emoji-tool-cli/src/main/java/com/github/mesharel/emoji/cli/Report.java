@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import java.util.Locale;
+
+/**
+ * 处理结果统计
+ */
+final class Report {
+    private final int files;
+    private final long lines;
+    private final long bytes;
+    private final long nanos;
+
+    Report(int files, long lines, long bytes, long nanos) {
+        this.files = files;
+        this.lines = lines;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    int getFiles() {
+        return files;
+    }
+
+    long getLines() {
+        return lines;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return 每秒处理的 MB 数量 (10^6 字节)
+     */
+    double getMegabytesPerSecond() {
+        return this.bytes / 1e6 / seconds();
+    }
+
+    double getLinesPerSecond() {
+        return this.lines / seconds();
+    }
+
+    private double seconds() {
+        return Math.max(this.nanos, 1) / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d files, %d lines, %.1f MB in %.2f s (%.1f MB/s, %.0f lines/s)",
+            files, lines, bytes / 1e6, seconds(), getMegabytesPerSecond(), getLinesPerSecond());
+    }
+}
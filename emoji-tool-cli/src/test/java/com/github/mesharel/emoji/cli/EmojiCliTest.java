@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.cli;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EmojiCliTest {
+    private static final String DATASET = System.getProperty("emoji.dataset", "../src/test/resources/emoji.json");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void replaceKeepsOrder() throws IOException {
+        Path input = this.dir.resolve("in");
+        Files.createDirectories(input.resolve("nested"));
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("{\"id\":" + i + ",\"text\":\"hi :wave: :unknown_alias:\"}");
+            expected.add("{\"id\":" + i + ",\"text\":\"hi 👋 :unknown_alias:\"}");
+        }
+        Files.write(input.resolve("a.jsonl"), lines, StandardCharsets.UTF_8);
+        Files.write(input.resolve("nested/b.txt"), Arrays.asList(":grinning:", "", "plain"), StandardCharsets.UTF_8);
+
+        Path output = this.dir.resolve("out");
+        Result result = run("replace", "-d", DATASET, "-o", output.toString(), "-t", "4", "-b", "7", input.toString());
+
+        Assertions.assertEquals(EmojiCli.EXIT_OK, result.code, result.err);
+        Assertions.assertEquals(expected, Files.readAllLines(output.resolve("a.jsonl"), StandardCharsets.UTF_8));
+        Assertions.assertEquals(
+            Arrays.asList("😀", "", "plain"),
+            Files.readAllLines(output.resolve("nested/b.txt"), StandardCharsets.UTF_8));
+        Assertions.assertTrue(result.err.startsWith("replace: 2 files, 1003 lines"), result.err);
+    }
+
+    @Test
+    public void extractStripAndStats() throws IOException {
+        Path input = this.dir.resolve("messages.txt");
+        Files.write(input, Arrays.asList(
+            "hi 👋🏻😀",
+            "no emoji",
+            "😀 again"), StandardCharsets.UTF_8);
+
+        Result extract = run("extract", "--dataset", DATASET, input.toString());
+        Assertions.assertEquals(EmojiCli.EXIT_OK, extract.code, extract.err);
+        Assertions.assertEquals("👋🏻 😀\n\n😀\n", extract.out);
+
+        Result strip = run("strip", "--dataset", DATASET, "--batch", "1", input.toString());
+        Assertions.assertEquals("hi \nno emoji\n again\n", strip.out);
+
+        Result stats = run("stats", "--dataset", DATASET, "--top", "1", input.toString());
+        Assertions.assertEquals("2\t😀\t:grinning:\n", stats.out);
+    }
+
+    @Test
+    public void reportUsageErrors() throws IOException {
+        Assertions.assertEquals(EmojiCli.EXIT_USAGE, run("count", "-d", DATASET, "a.txt").code);
+        Assertions.assertEquals(EmojiCli.EXIT_USAGE, run("strip", "a.txt").code);
+        Assertions.assertEquals(EmojiCli.EXIT_USAGE, run("strip", "-d", DATASET, "-t", "0", "a.txt").code);
+        Assertions.assertEquals(EmojiCli.EXIT_FAILURE, run("strip", "-d", DATASET, this.dir.resolve("missing").toString()).code);
+
+        Path dataset = this.dir.resolve("broken.json");
+        Files.write(dataset, Arrays.asList("[{\"aliases\": []}]"), StandardCharsets.UTF_8);
+        Result broken = run("strip", "-d", dataset.toString(), dataset.toString());
+        Assertions.assertEquals(EmojiCli.EXIT_FAILURE, broken.code);
+        Assertions.assertTrue(broken.err.contains("has no emoji"), broken.err);
+
+        for (String entry : Arrays.asList(
+                "{\"emoji\": \"x\", \"skin_tones\": \"yes\"}",
+                "{\"emoji\": \"x\", \"tags\": \"a\"}",
+                "{\"emoji\": \"x\", \"aliases\": [1]}",
+                "{\"emoji\": \"x\", \"unicode_version\": 6.0}")) {
+            Files.write(dataset, Arrays.asList("[" + entry + "]"), StandardCharsets.UTF_8);
+            Result typed = run("strip", "-d", dataset.toString(), dataset.toString());
+            Assertions.assertEquals(EmojiCli.EXIT_FAILURE, typed.code, typed.err);
+            Assertions.assertTrue(typed.err.startsWith("error: invalid dataset"), typed.err);
+        }
+    }
+
+    @Test
+    public void rejectOutputConflicts() throws IOException {
+        Path first = this.dir.resolve("a").resolve("x.txt");
+        Path second = this.dir.resolve("b").resolve("x.txt");
+        Files.createDirectories(first.getParent());
+        Files.createDirectories(second.getParent());
+        Files.write(first, Arrays.asList("first \uD83D\uDE00"), StandardCharsets.UTF_8);
+        Files.write(second, Arrays.asList("second \uD83D\uDC4B"), StandardCharsets.UTF_8);
+        Path output = this.dir.resolve("out");
+
+        Result result = run("strip", "-d", DATASET, "-o", output.toString(), first.toString(), second.toString());
+        Assertions.assertEquals(EmojiCli.EXIT_FAILURE, result.code);
+        Assertions.assertTrue(result.err.contains("output conflict"), result.err);
+        Assertions.assertFalse(Files.exists(output.resolve("x.txt")));
+
+        // the same names are fine when writing to stdout
+        result = run("strip", "-d", DATASET, first.toString(), second.toString());
+        Assertions.assertEquals(EmojiCli.EXIT_OK, result.code, result.err);
+        Assertions.assertEquals("first \nsecond \n", result.out);
+    }
+
+    private static Result run(String... args) throws UnsupportedEncodingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = EmojiCli.run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        return new Result(code, out.toString("UTF-8"), err.toString("UTF-8"));
+    }
+
+    private static final class Result {
+        private final int code;
+        private final String out;
+        private final String err;
+
+        Result(int code, String out, String err) {
+            this.code = code;
+            this.out = out;
+            this.err = err;
+        }
+    }
+}
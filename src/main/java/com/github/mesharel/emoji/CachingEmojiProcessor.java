@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.ClockCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * 缓存短字符串处理结果的 {@link EmojiProcessor}<br>
+ *
+ * {@link #isEmoji(String)}, {@link #extract(String)} 与 {@link #replaceByAlias(String)}
+ * 的结果分别缓存在定长的 CLOCK 缓存中, 只有长度不超过 {@code maxKeyLength} 的字符串会被缓存.
+ * 命中时不需要加锁, 适合大量重复的短消息, 例如表情回复<br>
+ *
+ * 其余方法直接使用被包装的处理器的索引. 被包装的处理器为 {@link ReloadableEmojiProcessor} 时,
+ * 重新加载前缓存的结果会自动失效
+ */
+public class CachingEmojiProcessor extends EmojiProcessor {
+    private final EmojiProcessor delegate;
+    private final int maxKeyLength;
+    private final ClockCache<Boolean> emojiCache;
+    private final ClockCache<List<ExtractedEmoji>> extractCache;
+    private final ClockCache<String> replaceCache;
+
+    /**
+     * @param delegate 被包装的处理器, 不能为 {@literal null}
+     * @param maximumSize 每种结果的最大缓存数量, 必须大于 0
+     * @param maxKeyLength 可以被缓存的字符串的最大长度, 不能小于 0
+     */
+    public CachingEmojiProcessor(EmojiProcessor delegate, int maximumSize, int maxKeyLength) {
+        Objects.requireNonNull(delegate, "delegate must not be null");
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (maxKeyLength < 0) {
+            throw new IllegalArgumentException("maxKeyLength must not be negative");
+        }
+
+        this.delegate = delegate;
+        this.maxKeyLength = maxKeyLength;
+        this.emojiCache = new ClockCache<>(maximumSize);
+        this.extractCache = new ClockCache<>(maximumSize);
+        this.replaceCache = new ClockCache<>(maximumSize);
+    }
+
+    @Override
+    public boolean isEmoji(String s) {
+        if (s == null || s.length() > this.maxKeyLength) {
+            return super.isEmoji(s);
+        }
+
+        EmojiIndex version = index();
+        Boolean cached = this.emojiCache.get(s, version);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean emoji = super.isEmoji(s);
+        this.emojiCache.put(s, version, emoji);
+        return emoji;
+    }
+
+    /**
+     * 提取给定字符串中的所有 emoji, 短字符串的结果会被缓存并在多次调用间共享
+     *
+     * @param s 包含 emoji 的字符串
+     * @return 不可更改列表
+     */
+    @Override
+    public List<ExtractedEmoji> extract(String s) {
+        if (s == null || s.length() > this.maxKeyLength) {
+            return super.extract(s);
+        }
+
+        EmojiIndex version = index();
+        List<ExtractedEmoji> cached = this.extractCache.get(s, version);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<ExtractedEmoji> extracts = Collections.unmodifiableList(super.extract(s));
+        this.extractCache.put(s, version, extracts);
+        return extracts;
+    }
+
+    @Override
+    public String replaceByAlias(String s) {
+        if (s == null || s.length() > this.maxKeyLength) {
+            return super.replaceByAlias(s);
+        }
+
+        EmojiIndex version = index();
+        String cached = this.replaceCache.get(s, version);
+        if (cached != null) {
+            return cached;
+        }
+
+        String replaced = super.replaceByAlias(s);
+        this.replaceCache.put(s, version, replaced);
+        return replaced;
+    }
+
+    /**
+     * 清除所有缓存的结果, 不会重置命中统计
+     */
+    public void clear() {
+        this.emojiCache.clear();
+        this.extractCache.clear();
+        this.replaceCache.clear();
+    }
+
+    /**
+     * @return 所有缓存的命中次数
+     */
+    public long getHitCount() {
+        return this.emojiCache.getHitCount() + this.extractCache.getHitCount() + this.replaceCache.getHitCount();
+    }
+
+    /**
+     * @return 所有缓存的未命中次数, 不包括超过最大长度而未查找缓存的调用
+     */
+    public long getMissCount() {
+        return this.emojiCache.getMissCount() + this.extractCache.getMissCount() + this.replaceCache.getMissCount();
+    }
+
+    public EmojiProcessor getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    EmojiIndex index() {
+        return this.delegate.index();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CachingEmojiProcessor.class.getSimpleName() + "[", "]")
+            .add("delegate=" + delegate)
+            .add("maxKeyLength=" + maxKeyLength)
+            .add("emojiCache=" + emojiCache)
+            .add("extractCache=" + extractCache)
+            .add("replaceCache=" + replaceCache)
+            .toString();
+    }
+}
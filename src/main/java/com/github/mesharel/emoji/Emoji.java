@@ -16,6 +16,8 @@
 
 package com.github.mesharel.emoji;
 
+import com.github.mesharel.emoji.internal.StringUtils;
+
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -31,6 +33,12 @@ public class Emoji {
     private final boolean skinnable;
     private final List<String> aliases;
     private final List<String> tags;
+    private final String category;
+    private final String unicodeVersion;
+    /** 驻留后的标签, 用于分词时不创建对象地输出同义词 */
+    private final String[] tagTokens;
+    /** 在第一次使用时计算 */
+    private String hexSlug;
 
     /**
      * 创建一个 emoji
@@ -41,10 +49,33 @@ public class Emoji {
      * @param skinnable emoji 是否支持皮肤
      */
     public Emoji(String emoji, List<String> aliases, List<String> tags, boolean skinnable) {
+        this(emoji, aliases, tags, skinnable, null, null);
+    }
+
+    /**
+     * 创建一个 emoji
+     *
+     * @param emoji emoji 表情符号
+     * @param aliases emoji 别名
+     * @param tags emoji 标签
+     * @param skinnable emoji 是否支持皮肤
+     * @param category emoji 分类, 例如 {@code Smileys & Emotion}
+     * @param unicodeVersion 加入 emoji 的 unicode 版本, 例如 {@code 6.0}
+     */
+    public Emoji(String emoji, List<String> aliases, List<String> tags, boolean skinnable,
+                 String category, String unicodeVersion) {
         this.emoji = emoji;
         this.aliases = Collections.unmodifiableList(aliases);
         this.tags = Collections.unmodifiableList(tags);
         this.skinnable = skinnable;
+        this.category = category;
+        this.unicodeVersion = unicodeVersion;
+
+        this.tagTokens = new String[tags.size()];
+        for (int i = 0; i < this.tagTokens.length; i++) {
+            String tag = tags.get(i);
+            this.tagTokens[i] = tag == null ? null : tag.intern();
+        }
     }
 
     public String getEmoji() {
@@ -73,6 +104,44 @@ public class Emoji {
         return tags;
     }
 
+    /**
+     * @return emoji 分类, 未知时为 {@literal null}
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return 加入 emoji 的 unicode 版本, 未知时为 {@literal null}
+     */
+    public String getUnicodeVersion() {
+        return unicodeVersion;
+    }
+
+    /**
+     * @return 驻留后的标签, 不能修改
+     */
+    String[] getTagTokens() {
+        return tagTokens;
+    }
+
+    /**
+     * emoji 代码点的小写十六进制形式, 使用 {@code -} 分隔, 例如 {@code 1f468-200d-1f469}<br>
+     *
+     * 计算结果会被缓存
+     *
+     * @return 十六进制代码点
+     */
+    public String getHexSlug() {
+        String hexSlug = this.hexSlug;
+        if (hexSlug == null) {
+            this.hexSlug = hexSlug = StringUtils.appendHexCodePoints(
+                new StringBuilder(this.emoji.length() * 3), this.emoji, 0, this.emoji.length()).toString();
+        }
+
+        return hexSlug;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -93,6 +162,8 @@ public class Emoji {
             .add("skinnable=" + skinnable)
             .add("aliases=" + aliases)
             .add("tags=" + tags)
+            .add("category='" + category + "'")
+            .add("unicodeVersion='" + unicodeVersion + "'")
             .toString();
     }
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * 将 emoji 与数字转义相互转换的编解码器, 用于只接受 BMP 或 ASCII 字符的存储<br>
+ *
+ * 编码时只转义能够识别的 emoji (包括 ZWJ 序列与肤色), 其余字符原样输出,
+ * 因此不是 emoji 的增补字符不会被转义. 输入中原有的转义前缀也会被转义, 保证解码结果与编码前完全相同<br>
+ *
+ * <pre>
+ * EmojiCodec codec = processor.codec(EmojiCodec.Format.HTML);
+ * codec.encode("hi 👋🏻");            // hi &amp;#x1F44B;&amp;#x1F3FB;
+ * codec.decode(codec.encode(s));     // s
+ * </pre>
+ *
+ * {@link Reader} 版本的方法使用固定大小的缓冲区, 内存占用与输入长度无关. 该类可以在多个线程中共享
+ */
+public class EmojiCodec {
+    private static final int BUFFER_SIZE = 1 << 13;
+    /**
+     * 缓冲区末尾保留的字符数量, 保证匹配时可以看到完整的 emoji 或转义.
+     * 超过该长度的 emoji (例如后面跟随大量肤色) 只会少转义部分字符, 解码结果仍然与原文相同
+     */
+    private static final int LOOKAHEAD = 1 << 8;
+
+    private final EmojiProcessor processor;
+    private final Format format;
+
+    EmojiCodec(EmojiProcessor processor, Format format) {
+        this.processor = processor;
+        this.format = Objects.requireNonNull(format, "format must not be null");
+    }
+
+    /**
+     * 转义字符序列中的 emoji
+     *
+     * @param s 字符序列, 不能为 {@literal null}
+     * @return 编码后的字符串
+     */
+    public String encode(CharSequence s) {
+        StringBuilder sb = new StringBuilder(s.length() + (s.length() >> 1));
+        try {
+            encode(this.processor.index().getTrieTree(), s, s.length(), s.length(), sb);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 读取 {@code in} 中的所有字符, 转义其中的 emoji 后写入 {@code out}. 不会关闭 {@code in}
+     *
+     * @param in 输入, 不能为 {@literal null}
+     * @param out 输出, 不能为 {@literal null}
+     * @throws IOException 读取或写入时发生错误
+     */
+    public void encode(Reader in, Appendable out) throws IOException {
+        TrieTree trie = this.processor.index().getTrieTree();
+        transfer(in, out, (s, limit, length) -> encode(trie, s, limit, length, out));
+    }
+
+    /**
+     * 还原字符序列中的所有转义
+     *
+     * @param s 字符序列, 不能为 {@literal null}
+     * @return 解码后的字符串
+     */
+    public String decode(CharSequence s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        try {
+            decode(s, s.length(), s.length(), sb);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 读取 {@code in} 中的所有字符, 还原其中的转义后写入 {@code out}. 不会关闭 {@code in}
+     *
+     * @param in 输入, 不能为 {@literal null}
+     * @param out 输出, 不能为 {@literal null}
+     * @throws IOException 读取或写入时发生错误
+     */
+    public void decode(Reader in, Appendable out) throws IOException {
+        transfer(in, out, (s, limit, length) -> decode(s, limit, length, out));
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * 分块读取输入, 每次处理缓冲区中除末尾 {@link #LOOKAHEAD} 个字符外的部分
+     */
+    private static void transfer(Reader in, Appendable out, Chunk chunk) throws IOException {
+        Objects.requireNonNull(in, "in must not be null");
+        Objects.requireNonNull(out, "out must not be null");
+
+        char[] buffer = new char[BUFFER_SIZE];
+        CharBuffer view = CharBuffer.wrap(buffer);
+        int filled = 0;
+        boolean eof = false;
+
+        while (!eof) {
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read == -1) {
+                eof = true;
+            } else {
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+            }
+
+            int processed = chunk.process(view, eof ? filled : filled - LOOKAHEAD, filled);
+            System.arraycopy(buffer, processed, buffer, 0, filled - processed);
+            filled -= processed;
+        }
+    }
+
+    /**
+     * @return 已处理的字符数量
+     */
+    private int encode(TrieTree trie, CharSequence s, int limit, int length, Appendable out) throws IOException {
+        int pending = 0;
+        int i = 0;
+        while (i < limit) {
+            char c = s.charAt(i);
+            if (c == this.format.prefix.charAt(0) && startsWith(s, i, length, this.format.prefix)) {
+                out.append(s, pending, i);
+                writeEscape(out, c);
+                pending = ++i;
+                continue;
+            }
+
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
+                continue;
+            }
+
+            out.append(s, pending, i);
+            int end = TrieTree.end(matched);
+            while (i < end) {
+                int cp = Character.codePointAt(s, i);
+                writeEscape(out, cp);
+                i += Character.charCount(cp);
+            }
+            pending = i;
+        }
+
+        out.append(s, pending, i);
+        return i;
+    }
+
+    /**
+     * @return 已处理的字符数量
+     */
+    private int decode(CharSequence s, int limit, int length, Appendable out) throws IOException {
+        String prefix = this.format.prefix;
+        int pending = 0;
+        int i = 0;
+        while (i < limit) {
+            if (s.charAt(i) != prefix.charAt(0) || !startsWith(s, i, length, prefix)) {
+                i++;
+                continue;
+            }
+
+            int cp = 0;
+            int j = i + prefix.length();
+            int digits = 0;
+            for (; j < length && digits <= 6; j++, digits++) {
+                int digit = Character.digit(s.charAt(j), 16);
+                if (digit == -1) {
+                    break;
+                }
+                cp = (cp << 4) | digit;
+            }
+
+            if (digits == 0 || digits > 6 || j >= length || s.charAt(j) != this.format.suffix
+                || !Character.isValidCodePoint(cp) || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                i++;
+                continue;
+            }
+
+            out.append(s, pending, i);
+            if (Character.isSupplementaryCodePoint(cp)) {
+                out.append(Character.highSurrogate(cp)).append(Character.lowSurrogate(cp));
+            } else {
+                out.append((char) cp);
+            }
+            pending = i = j + 1;
+        }
+
+        out.append(s, pending, i);
+        return i;
+    }
+
+    private void writeEscape(Appendable out, int cp) throws IOException {
+        out.append(this.format.prefix);
+        int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(cp) + 3) >> 2);
+        for (int shift = (digits - 1) << 2; shift >= 0; shift -= 4) {
+            out.append(Character.toUpperCase(Character.forDigit((cp >>> shift) & 0xf, 16)));
+        }
+        out.append(this.format.suffix);
+    }
+
+    private static boolean startsWith(CharSequence s, int index, int length, String prefix) {
+        if (length - index < prefix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(index + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiCodec.class.getSimpleName() + "[", "]")
+            .add("format=" + format)
+            .toString();
+    }
+
+    /**
+     * 转义格式
+     */
+    public enum Format {
+        /** HTML 数字字符引用, 例如 {@code &#x1F44B;} */
+        HTML("&#x", ';'),
+        /** 例如 <code>&#92;u{1F44B}</code> */
+        UNICODE("\\u{", '}');
+
+        private final String prefix;
+        private final char suffix;
+
+        Format(String prefix, char suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public char getSuffix() {
+            return suffix;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        /**
+         * @param s 缓冲区
+         * @param limit 可以开始匹配的字符索引上限(不包含)
+         * @param length 缓冲区中的字符数量
+         * @return 已处理的字符数量
+         */
+        int process(CharSequence s, int limit, int length) throws IOException;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * emoji 出现次数统计<br>
+ *
+ * 计数保存在以 emoji 编号为索引的 {@code long} 数组中, 统计过程中不会装箱.
+ * 使用 {@link EmojiProcessor#createHistogram(boolean)} 创建,
+ * 使用 {@link EmojiProcessor#countEmojis(CharSequence, EmojiHistogram)} 统计<br>
+ *
+ * 该类不是线程安全的, 多线程统计时每个线程应使用独立的实例, 最后使用 {@link #merge(EmojiHistogram)} 合并
+ */
+public class EmojiHistogram {
+    /** 每个 emoji 占用的计数槽数量, 0 号槽为无肤色, 其余依次为 {@link SkinTone} */
+    private static final int SLOTS = SkinTone.values().length + 1;
+
+    private final EmojiIndex index;
+    private final TrieTree trieTree;
+    private final boolean foldSkinTone;
+    private final long[] counts;
+
+    EmojiHistogram(EmojiIndex index, boolean foldSkinTone) {
+        this.index = index;
+        this.trieTree = index.getTrieTree();
+        this.foldSkinTone = foldSkinTone;
+        this.counts = new long[foldSkinTone ? trieTree.size() : trieTree.size() * SLOTS];
+    }
+
+    /**
+     * 累加一次计数
+     *
+     * @param id emoji 编号
+     * @param tone 肤色序号, 0 代表无肤色, 其余为 {@link SkinTone#ordinal()} + 1
+     */
+    void add(int id, int tone) {
+        this.counts[this.foldSkinTone ? id : id * SLOTS + tone]++;
+    }
+
+    EmojiIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 是否将不同肤色的 emoji 合并计数
+     */
+    public boolean isFoldSkinTone() {
+        return foldSkinTone;
+    }
+
+    /**
+     * 获取给定 emoji 的出现次数, 包括所有肤色
+     *
+     * @param emoji emoji, 不能为 {@literal null}
+     * @return 出现次数
+     */
+    public long getCount(Emoji emoji) {
+        Objects.requireNonNull(emoji, "emoji must not be null");
+
+        int id = this.trieTree.indexOf(emoji.getEmoji());
+        return id == -1 ? 0 : total(id);
+    }
+
+    /**
+     * 获取给定 emoji 使用指定肤色时的出现次数<br>
+     *
+     * 只有未合并肤色时才能使用该方法. 包含多个肤色的 emoji 按第一个肤色计数
+     *
+     * @param emoji emoji, 不能为 {@literal null}
+     * @param skinTone 肤色, {@literal null} 代表无肤色
+     * @return 出现次数
+     */
+    public long getCount(Emoji emoji, SkinTone skinTone) {
+        Objects.requireNonNull(emoji, "emoji must not be null");
+        if (this.foldSkinTone) {
+            throw new IllegalStateException("skin tones have been folded");
+        }
+
+        int id = this.trieTree.indexOf(emoji.getEmoji());
+        return id == -1 ? 0 : this.counts[id * SLOTS + (skinTone == null ? 0 : skinTone.ordinal() + 1)];
+    }
+
+    /**
+     * @return 所有 emoji 的出现次数之和
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long count : this.counts) {
+            total += count;
+        }
+
+        return total;
+    }
+
+    /**
+     * 将另一个统计结果累加到该实例中
+     *
+     * @param other 由同一个 {@link EmojiProcessor} 创建, 且肤色合并方式相同的统计结果
+     * @return 该实例
+     */
+    public EmojiHistogram merge(EmojiHistogram other) {
+        Objects.requireNonNull(other, "histogram must not be null");
+        if (other.index != this.index || other.foldSkinTone != this.foldSkinTone) {
+            throw new IllegalArgumentException("histograms are not compatible");
+        }
+
+        long[] source = other.counts;
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += source[i];
+        }
+
+        return this;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+    }
+
+    /**
+     * 获取出现次数最多的 {@code k} 个 emoji, 不同肤色合并计数<br>
+     *
+     * 使用大小为 {@code k} 的最小堆选取, 不会对整个计数表排序
+     *
+     * @param k 数量
+     * @return 按出现次数降序排列的不可修改列表, 不包含未出现的 emoji
+     */
+    public List<Map.Entry<Emoji, Long>> topK(int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+
+        int[] heapIds = new int[k];
+        long[] heapCounts = new long[k];
+        int size = 0;
+
+        for (int id = 0, n = this.trieTree.size(); id < n; id++) {
+            long count = total(id);
+            if (count == 0) {
+                continue;
+            }
+
+            if (size < k) {
+                heapIds[size] = id;
+                heapCounts[size] = count;
+                siftUp(heapIds, heapCounts, size++);
+            } else if (count > heapCounts[0]) {
+                heapIds[0] = id;
+                heapCounts[0] = count;
+                siftDown(heapIds, heapCounts, size);
+            }
+        }
+
+        // 依次弹出堆顶的最小值, 再反转为降序
+        List<Map.Entry<Emoji, Long>> top = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(this.trieTree.getEmoji(heapIds[0]), heapCounts[0]));
+            heapIds[0] = heapIds[i];
+            heapCounts[0] = heapCounts[i];
+            siftDown(heapIds, heapCounts, i);
+        }
+
+        Collections.reverse(top);
+        return Collections.unmodifiableList(top);
+    }
+
+    private long total(int id) {
+        if (this.foldSkinTone) {
+            return this.counts[id];
+        }
+
+        long total = 0;
+        for (int i = id * SLOTS, end = i + SLOTS; i < end; i++) {
+            total += this.counts[i];
+        }
+
+        return total;
+    }
+
+    private static void siftUp(int[] ids, long[] counts, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+
+            swap(ids, counts, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, long[] counts, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = (index << 1) + 1;
+            int right = left + 1;
+
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+
+            swap(ids, counts, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] ids, long[] counts, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiHistogram.class.getSimpleName() + "[", "]")
+            .add("foldSkinTone=" + foldSkinTone)
+            .add("total=" + getTotal())
+            .toString();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.EmojiTable;
+import com.github.mesharel.emoji.internal.PrefixIndex;
+import com.github.mesharel.emoji.internal.StringUtils;
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Predicate;
+
+/**
+ * {@link EmojiProcessor} 使用的一组 emoji 索引<br>
+ *
+ * unicode 编码与别名的查找分别使用字典树与前缀索引. 索引在第一次使用时创建, 创建完成后不可修改,
+ * 多个线程可能同时创建同一个索引, 但创建出的索引内容与 emoji 编号完全相同<br>
+ *
+ * {@link #register(Emoji)} 与 {@link #unregister(Emoji)} 基于当前索引派生新的实例,
+ * 只复制发生变化的字典树路径, 不会重新创建整个索引<br>
+ *
+ * 移除或替换的 emoji 的编号不会被重新使用, 旧快照仍然通过这些编号读取 emoji.
+ * 废弃的编号超过 {@link #COMPACT_THRESHOLD} 个且多于有效的编号时, 使用剩余的 emoji 重新创建索引并重新分配编号,
+ * 因此反复添加与移除时编号数量不超过有效数量的两倍左右, 重新创建的开销均摊到每次修改为常数
+ */
+class EmojiIndex {
+    /** 允许的废弃编号数量下限 */
+    static final int COMPACT_THRESHOLD = 64;
+
+    /** 派生出的实例为 {@literal null} */
+    private final List<Emoji> originals;
+    private TrieTree trieTree;
+    private PrefixIndex prefixIndex;
+    /** 有效的 emoji 数量, 尚未计算时为 {@code -1} */
+    private int live;
+
+    EmojiIndex(List<Emoji> emojis) {
+        this.originals = emojis;
+        this.live = -1;
+    }
+
+    private EmojiIndex(TrieTree trieTree, PrefixIndex prefixIndex, int live) {
+        this.originals = null;
+        this.trieTree = trieTree;
+        this.prefixIndex = prefixIndex;
+        this.live = live;
+    }
+
+    /**
+     * 立即创建所有索引
+     *
+     * @return 该实例
+     */
+    EmojiIndex warmUp() {
+        getTrieTree();
+        getPrefixIndex();
+        return this;
+    }
+
+    /**
+     * 创建包含给定 emoji 的索引, 该实例不会改变. 已存在相同 unicode 编码的 emoji 时替换原 emoji
+     *
+     * @param emoji emoji, unicode 编码不能为空
+     * @return 新的索引
+     */
+    EmojiIndex register(Emoji emoji) {
+        TrieTree trie = getTrieTree();
+        PrefixIndex prefix = getPrefixIndex();
+
+        int previous = trie.indexOf(emoji.getEmoji());
+        if (previous != -1) {
+            prefix = prefix.unregister(trie.getEmoji(previous), previous);
+        }
+
+        EmojiTable table = trie.getTable().append(emoji);
+        int live = previous == -1 ? liveCount() + 1 : liveCount();
+        return compact(new EmojiIndex(trie.register(emoji, table), prefix.register(emoji, table), live));
+    }
+
+    /**
+     * 创建不包含给定 emoji 的索引, 该实例不会改变
+     *
+     * @param emoji emoji
+     * @return 新的索引, emoji 不存在时返回该实例
+     */
+    EmojiIndex unregister(Emoji emoji) {
+        TrieTree trie = getTrieTree();
+        int id = trie.indexOf(emoji.getEmoji());
+        if (id == -1) {
+            return this;
+        }
+
+        Emoji registered = trie.getEmoji(id);
+        return compact(new EmojiIndex(
+            trie.unregister(registered), getPrefixIndex().unregister(registered, id), liveCount() - 1));
+    }
+
+    /**
+     * @return 废弃的编号过多时返回重新分配编号的索引, 否则返回给定索引
+     */
+    private static EmojiIndex compact(EmojiIndex index) {
+        int dead = index.trieTree.size() - index.live;
+        if (dead <= COMPACT_THRESHOLD || dead <= index.live) {
+            return index;
+        }
+
+        return new EmojiIndex(index.trieTree.getEmojis()).warmUp();
+    }
+
+    /**
+     * @return 有效的 emoji 数量
+     */
+    private int liveCount() {
+        int live = this.live;
+        if (live == -1) {
+            this.live = live = getTrieTree().getEmojis().size();
+        }
+
+        return live;
+    }
+
+    /**
+     * 创建只包含满足条件的 emoji 的视图, 视图与该实例共享字典树与前缀索引, 只使用编号位图判断 emoji 是否可见
+     *
+     * @param filter 条件
+     * @return 新的索引
+     */
+    EmojiIndex view(Predicate<? super Emoji> filter) {
+        TrieTree trie = getTrieTree();
+        long[] members = new long[(trie.size() + 63) >>> 6];
+        for (int id = 0; id < trie.size(); id++) {
+            Emoji emoji = trie.getEmoji(id);
+            if (emoji != null && trie.isMember(id) && filter.test(emoji)) {
+                members[id >>> 6] |= 1L << id;
+            }
+        }
+
+        return new EmojiIndex(trie.view(members), getPrefixIndex().view(members), -1);
+    }
+
+    /**
+     * @return 索引中的所有 emoji, 不可修改
+     */
+    List<Emoji> getEmojis() {
+        return this.originals != null ? this.originals : getTrieTree().getEmojis();
+    }
+
+    /**
+     * @param unicode unicode 编码, 不包含肤色
+     * @return 未找到返回 {@literal null}
+     */
+    Emoji getEmoji(String unicode) {
+        TrieTree trie = getTrieTree();
+        int id = trie.indexOf(unicode);
+        return id == -1 ? null : trie.getEmoji(id);
+    }
+
+    /**
+     * @param alias 别名, 区分大小写
+     * @return 未找到返回 {@literal null}
+     */
+    Emoji getByAlias(String alias) {
+        return StringUtils.hasText(alias) ? getPrefixIndex().find(alias) : null;
+    }
+
+    TrieTree getTrieTree() {
+        TrieTree trieTree = this.trieTree;
+        if (trieTree != null) {
+            return trieTree;
+        }
+
+        this.trieTree = trieTree = new TrieTree(this.originals);
+        return trieTree;
+    }
+
+    PrefixIndex getPrefixIndex() {
+        PrefixIndex prefixIndex = this.prefixIndex;
+        if (prefixIndex != null) {
+            return prefixIndex;
+        }
+
+        this.prefixIndex = prefixIndex = new PrefixIndex(this.originals);
+        return prefixIndex;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiIndex.class.getSimpleName() + "[", "]")
+            .add("size=" + getEmojis().size())
+            .toString();
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 在一次遍历中完成多种 emoji 处理的流水线<br>
+ *
+ * 可以组合以下步骤: 替换别名, 统一或删除肤色, 收集 emoji, 输出删除 emoji 后的文本.
+ * 处理时只遍历一次输入, 非 emoji 的文本按区间整体写入输出, 不会创建中间字符串<br>
+ *
+ * Example:
+ * <pre>
+ * EmojiPipeline pipeline = processor.pipeline().expandAliases().skinTone(SkinTone.MEDIUM);
+ * pipeline.process(message, text, searchText, extracted::add);
+ * </pre>
+ *
+ * 该类不可修改, 可以在多个线程中共享. 每个方法都返回新的流水线
+ */
+public class EmojiPipeline {
+    private final EmojiProcessor processor;
+    private final boolean expandAliases;
+    private final int maxDistance;
+    /** 统一使用的肤色, 为 {@literal null} 且 {@link #removeSkinTone} 为 {@code false} 时保留原肤色 */
+    private final SkinTone skinTone;
+    private final boolean removeSkinTone;
+    /** 索引 -> 应用 {@link #skinTone} 后的 emoji, 索引变化后重新创建 */
+    private volatile Toned toned;
+
+    EmojiPipeline(EmojiProcessor processor) {
+        this(processor, false, 0, null, false);
+    }
+
+    private EmojiPipeline(EmojiProcessor processor, boolean expandAliases, int maxDistance,
+                          SkinTone skinTone, boolean removeSkinTone) {
+        this.processor = processor;
+        this.expandAliases = expandAliases;
+        this.maxDistance = maxDistance;
+        this.skinTone = skinTone;
+        this.removeSkinTone = removeSkinTone;
+    }
+
+    /**
+     * 将 {@code :alias:} 形式的别名替换为 emoji, 规则与 {@link EmojiProcessor#replaceByAlias(String)} 相同
+     *
+     * @return 新的流水线
+     */
+    public EmojiPipeline expandAliases() {
+        return expandAliases(0);
+    }
+
+    /**
+     * 将 {@code :alias:} 形式的别名替换为 emoji, 允许别名存在拼写错误
+     *
+     * @param maxDistance 别名允许的最大编辑距离, 不能小于 0
+     * @return 新的流水线
+     * @see EmojiProcessor#replaceByAlias(String, int)
+     */
+    public EmojiPipeline expandAliases(int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
+
+        return new EmojiPipeline(this.processor, true, maxDistance, this.skinTone, this.removeSkinTone);
+    }
+
+    /**
+     * 将所有可以修改肤色的 emoji 统一为给定肤色, 规则与 {@link EmojiProcessor#applySkinTone(String, SkinTone...)} 相同
+     *
+     * @param skinTone 肤色, 不能为 {@literal null}
+     * @return 新的流水线
+     */
+    public EmojiPipeline skinTone(SkinTone skinTone) {
+        Objects.requireNonNull(skinTone, "skinTone must not be null");
+
+        return new EmojiPipeline(this.processor, this.expandAliases, this.maxDistance, skinTone, false);
+    }
+
+    /**
+     * 删除所有 emoji 的肤色
+     *
+     * @return 新的流水线
+     */
+    public EmojiPipeline removeSkinTone() {
+        return new EmojiPipeline(this.processor, this.expandAliases, this.maxDistance, null, true);
+    }
+
+    /**
+     * 处理给定字符序列
+     *
+     * @param s 字符序列
+     * @return 处理后的字符串
+     */
+    public String process(CharSequence s) {
+        StringBuilder out = new StringBuilder(s == null ? 0 : s.length());
+        try {
+            process(s, out, null, null);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * 处理给定字符序列, 并将结果写入各个输出. 所有输出都可以为 {@literal null}
+     *
+     * @param s 字符序列
+     * @param out 处理后的文本
+     * @param stripped 处理后删除所有 emoji 的文本
+     * @param matches 处理后的每个 emoji, 位置为在 {@code out} 中的位置
+     * @throws IOException 写入输出时发生错误
+     */
+    public void process(CharSequence s, Appendable out, Appendable stripped,
+                        Consumer<? super ExtractedEmoji> matches) throws IOException {
+        if (s == null) {
+            return;
+        }
+
+        EmojiIndex index = this.processor.index();
+        TrieTree trie = index.getTrieTree();
+        ConcurrentHashMap<String, String> toned = this.skinTone == null ? null : toned(index);
+        int length = s.length();
+        // 尚未写入的普通文本的起始索引
+        int pending = 0;
+        // 已写入 out 的字符数量
+        int written = 0;
+
+        for (int i = 0; i < length;) {
+            char c = s.charAt(i);
+            Emoji emoji = null;
+            int end = i;
+
+            if (c == ':' && this.expandAliases) {
+                int close = aliasEnd(s, i, length);
+                if (close != -1) {
+                    String alias = s.subSequence(i + 1, close).toString();
+                    emoji = EmojiProcessor.lookupAlias(index, alias, this.maxDistance);
+                    end = close + 1;
+                    if (emoji == null) {
+                        // 与正则表达式相同, 未找到的别名整体作为普通文本
+                        i = end;
+                        continue;
+                    }
+                }
+            } else if (trie.mayStart(c)) {
+                long matched = trie.match(s, i, length);
+                if (matched != TrieTree.NO_MATCH) {
+                    emoji = trie.getEmoji(TrieTree.id(matched));
+                    end = TrieTree.end(matched);
+                }
+            }
+
+            if (emoji == null) {
+                i++;
+                continue;
+            }
+
+            if (pending < i) {
+                append(out, s, pending, i);
+                append(stripped, s, pending, i);
+                written += i - pending;
+            }
+
+            boolean alias = c == ':' && this.expandAliases;
+            CharSequence replaced = alias ? emoji.getEmoji() : s;
+            int from = alias ? 0 : i;
+            int to = alias ? emoji.getEmoji().length() : end;
+            if (this.removeSkinTone) {
+                replaced = emoji.getEmoji();
+                from = 0;
+                to = replaced.length();
+            } else if (this.skinTone != null) {
+                replaced = toned.computeIfAbsent(
+                    emoji.getEmoji(), base -> this.processor.applySkinTone(index, base, this.skinTone));
+                from = 0;
+                to = replaced.length();
+            }
+
+            append(out, replaced, from, to);
+            if (matches != null) {
+                matches.accept(new ExtractedEmoji(
+                    replaced.subSequence(from, to).toString(), written, written + to - from, emoji));
+            }
+
+            written += to - from;
+            pending = i = end;
+        }
+
+        if (pending < length) {
+            append(out, s, pending, length);
+            append(stripped, s, pending, length);
+        }
+    }
+
+    /**
+     * 返回给定索引对应的肤色缓存. 重新加载后使用新的缓存, 避免返回旧索引中的结果
+     */
+    private ConcurrentHashMap<String, String> toned(EmojiIndex index) {
+        Toned toned = this.toned;
+        if (toned == null || toned.index != index) {
+            toned = new Toned(index);
+            this.toned = toned;
+        }
+
+        return toned.map;
+    }
+
+    /**
+     * @return {@code :alias:} 结束冒号的索引, 不是别名返回 {@code -1}
+     */
+    private static int aliasEnd(CharSequence s, int start, int length) {
+        int i = start + 1;
+        while (i < length && isWordChar(s.charAt(i))) {
+            i++;
+        }
+
+        return i > start + 1 && i < length && s.charAt(i) == ':' ? i : -1;
+    }
+
+    /**
+     * 与正则表达式中的 {@code \w} 相同
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static void append(Appendable appendable, CharSequence s, int start, int end) throws IOException {
+        if (appendable != null) {
+            appendable.append(s, start, end);
+        }
+    }
+
+    private static final class Toned {
+        private final EmojiIndex index;
+        /** emoji -> 应用肤色后的 emoji */
+        private final ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+
+        Toned(EmojiIndex index) {
+            this.index = index;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiPipeline.class.getSimpleName() + "[", "]")
+            .add("expandAliases=" + expandAliases)
+            .add("maxDistance=" + maxDistance)
+            .add("skinTone=" + skinTone)
+            .add("removeSkinTone=" + removeSkinTone)
+            .toString();
+    }
+}
@@ -16,19 +16,26 @@
 
 package com.github.mesharel.emoji;
 
+import com.github.mesharel.emoji.internal.EmojiSpliterator;
 import com.github.mesharel.emoji.internal.MatchedAlias;
 import com.github.mesharel.emoji.internal.StringUtils;
 import com.github.mesharel.emoji.internal.TrieTree;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 处理 emoji 的工具类
@@ -44,16 +51,108 @@ public class EmojiProcessor {
 
     private static final Pattern ALIAS_PATTERN = Pattern.compile(":(\\w+):");
 
-    private final List<Emoji> originals;
-    private final Map<String, Emoji> emojiMap;
-    private Map<String, Emoji> aliasMap;
-    private TrieTree trieTree;
+    private final EmojiIndex index;
 
     public EmojiProcessor(List<Emoji> emojis) {
-        this.originals = emojis;
-        this.emojiMap = new HashMap<>(emojis.size());
+        this.index = new EmojiIndex(emojis);
+    }
+
+    /**
+     * 供重写了 {@link #index()} 的子类使用
+     */
+    EmojiProcessor() {
+        this.index = null;
+    }
+
+    private EmojiProcessor(EmojiIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * 创建在该实例的 emoji 之上叠加给定 emoji 的处理器, 该实例不会改变<br>
+     *
+     * 新处理器与该实例共享字典树等索引, 只复制字典树中受影响的路径, 适合为大量租户分别添加少量自定义 emoji.
+     * 叠加的 emoji 优先: 与已有 emoji 的 unicode 编码相同时替换已有 emoji, 别名相同时查找到叠加的 emoji.
+     * 查找的开销与单独创建的处理器相同<br>
+     *
+     * 对于 {@link ReloadableEmojiProcessor}, 新处理器基于调用时的快照, 之后的重新加载不会影响新处理器
+     *
+     * @param emojis 叠加的 emoji, 不能为 {@literal null}, unicode 编码不能为空
+     * @return 新的处理器
+     */
+    public EmojiProcessor overlay(Collection<Emoji> emojis) {
+        Objects.requireNonNull(emojis, "emojis must not be null");
+
+        EmojiIndex overlay = index();
+        for (Emoji emoji : emojis) {
+            Objects.requireNonNull(emoji, "emoji must not be null");
+            if (!StringUtils.hasText(emoji.getEmoji())) {
+                throw new IllegalArgumentException("emoji must not be empty");
+            }
+
+            overlay = overlay.register(emoji);
+        }
+
+        return new EmojiProcessor(overlay);
+    }
+
+    /**
+     * 创建只包含满足条件的 emoji 的处理器, 该实例不会改变<br>
+     *
+     * 新处理器与该实例共享字典树等索引, 只使用编号位图判断 emoji 是否可见, 创建的开销与 emoji 数量成正比,
+     * 每个视图只占用每个 emoji 一位的内存. 匹配时返回最长的可见 emoji, 例如不可见的 ZWJ 序列会被拆分为可见的组成部分<br>
+     *
+     * 对于 {@link ReloadableEmojiProcessor}, 新处理器基于调用时的快照
+     *
+     * @param filter 条件, 不能为 {@literal null}
+     * @return 新的处理器
+     */
+    public EmojiProcessor view(Predicate<? super Emoji> filter) {
+        Objects.requireNonNull(filter, "filter must not be null");
 
-        emojis.forEach(emoji -> emojiMap.put(emoji.getEmoji(), emoji));
+        return new EmojiProcessor(index().view(filter));
+    }
+
+    /**
+     * 创建只包含不晚于给定 unicode 版本加入的 emoji 的处理器, 用于兼容旧的客户端. 版本未知或为空的 emoji 总是可见
+     *
+     * @param unicodeVersion unicode 版本, 例如 {@code 11.0}, 不能为 {@literal null}
+     * @return 新的处理器
+     * @see #view(Predicate)
+     */
+    public EmojiProcessor viewUntilVersion(String unicodeVersion) {
+        Objects.requireNonNull(unicodeVersion, "unicodeVersion must not be null");
+
+        // 在创建视图前校验版本格式
+        compareVersion(unicodeVersion, unicodeVersion);
+        return view(emoji -> emoji.getUnicodeVersion() == null || !StringUtils.hasText(emoji.getUnicodeVersion())
+            || compareVersion(emoji.getUnicodeVersion(), unicodeVersion) <= 0);
+    }
+
+    /**
+     * 按数字比较以 {@code .} 分隔的版本, 缺少的部分视为 0
+     */
+    private static int compareVersion(String a, String b) {
+        String[] left = a.trim().split("\\.");
+        String[] right = b.trim().split("\\.");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            int compared = Integer.compare(
+                i < left.length ? parseVersion(left[i]) : 0,
+                i < right.length ? parseVersion(right[i]) : 0);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+
+        return 0;
+    }
+
+    private static int parseVersion(String part) {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid version: " + part, e);
+        }
     }
 
     /**
@@ -73,7 +172,9 @@ public class EmojiProcessor {
             return true;
         }
 
-        return emojiMap.containsKey(s.codePointCount(0, s.length()) == 1 ? s : removeSkinTone(s));
+        // 与提取使用相同的规则, 多余的肤色或不能修改肤色的 emoji 之后的肤色不是 emoji 的一部分
+        long matched = index().getTrieTree().match(s, 0, s.length());
+        return matched != TrieTree.NO_MATCH && TrieTree.end(matched) == s.length();
     }
 
     /**
@@ -87,7 +188,62 @@ public class EmojiProcessor {
             return Optional.empty();
         }
 
-        return Optional.ofNullable(getAliasMap().get(StringUtils.trimWhitespace(alias)));
+        return Optional.ofNullable(index().getByAlias(StringUtils.trimWhitespace(alias)));
+    }
+
+    /**
+     * 查找别名与给定 {@code alias} 编辑距离不超过 {@code maxDistance} 的 emoji<br>
+     *
+     * 优先返回别名完全相同的 emoji, 否则返回编辑距离最小的 emoji. 为避免过短的别名被误匹配,
+     * 只有 {@code alias} 长度大于 {@code maxDistance * 2} 时才会进行模糊查找
+     *
+     * @param alias emoji 别名
+     * @param maxDistance 最大编辑距离(Levenshtein), 不能小于 0
+     * @return 查找到的 emoji
+     */
+    public Optional<Emoji> findByAliasFuzzy(String alias, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
+
+        if (alias == null || !StringUtils.hasText(alias)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(lookupAlias(index(), StringUtils.trimWhitespace(alias), maxDistance));
+    }
+
+    /**
+     * 根据输入的前缀推荐 emoji<br>
+     *
+     * 匹配别名与标签的前缀, 忽略大小写, 前缀开头的 {@code :} 会被忽略.
+     * 别名匹配优先于标签匹配, 较短的别名或标签优先<br>
+     *
+     * Example:
+     * <pre>
+     * processor.suggest(":smi", 5);
+     * // 😄 😏 😃 😸 😼
+     * </pre>
+     *
+     * @param prefix 别名或标签前缀
+     * @param limit 最大数量
+     * @return 按排名排列的不可修改列表
+     */
+    public List<Emoji> suggest(String prefix, int limit) {
+        if (prefix == null || !StringUtils.hasText(prefix)) {
+            return Collections.emptyList();
+        }
+
+        String trimmed = StringUtils.trimWhitespace(prefix);
+        if (trimmed.charAt(0) == ':') {
+            trimmed = trimmed.substring(1);
+        }
+
+        if (trimmed.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return index().getPrefixIndex().suggest(trimmed, limit);
     }
 
     /**
@@ -103,7 +259,8 @@ public class EmojiProcessor {
             return Optional.empty();
         }
 
-        Emoji emoji = this.emojiMap.get(unicode);
+        EmojiIndex index = index();
+        Emoji emoji = index.getEmoji(unicode);
         if (emoji != null) {
             return Optional.of(emoji);
         }
@@ -114,7 +271,7 @@ public class EmojiProcessor {
             return Optional.empty();
         }
 
-        return Optional.ofNullable(this.emojiMap.get(removed));
+        return Optional.ofNullable(index.getEmoji(removed));
     }
 
     /**
@@ -135,6 +292,15 @@ public class EmojiProcessor {
             return emoji;
         }
 
+        return applySkinTone(index(), emoji, skinTones);
+    }
+
+    /**
+     * 使用给定的索引修改 emoji 中的肤色
+     *
+     * @see #applySkinTone(String, SkinTone...)
+     */
+    String applySkinTone(EmojiIndex emojiIndex, String emoji, SkinTone... skinTones) {
         String removed = removeSkinTone(emoji);
         String[] splits = removed.split(ZWJ);
         StringBuilder sb = new StringBuilder((splits.length * 3) - 1);
@@ -147,7 +313,8 @@ public class EmojiProcessor {
                 sb.append(ZWJ);
             }
 
-            if (!this.emojiMap.containsKey(section) || !this.emojiMap.get(section).isSkinnable()) {
+            Emoji found = emojiIndex.getEmoji(section);
+            if (found == null || !found.isSkinnable()) {
                 sb.append(section);
                 continue;
             }
@@ -201,33 +368,327 @@ public class EmojiProcessor {
             return Collections.emptyList();
         }
 
-        int start = 0;
-        int[] codePoints = s.codePoints().toArray();
+        TrieTree trie = index().getTrieTree();
         List<ExtractedEmoji> extracts = new ArrayList<>();
+        for (int i = 0, length = s.length(); i < length;) {
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
+                continue;
+            }
+
+            int end = TrieTree.end(matched);
+            extracts.add(new ExtractedEmoji(s.substring(i, end), i, end, trie.getEmoji(TrieTree.id(matched))));
+            i = end;
+        }
+
+        return extracts;
+    }
 
-        while (start < codePoints.length) {
-            int end = getTrieTree().tryMatch(codePoints, start);
+    /**
+     * 提取给定字符序列中的所有 emoji, 并保存到 {@code result} 中<br>
+     *
+     * {@code result} 原有的内容会被清空. 该方法不会创建 emoji 字符串, 重复使用同一个 {@code result} 时不会创建任何对象
+     *
+     * @param s 字符序列
+     * @param result 保存结果的容器, 不能为 {@literal null}
+     * @return {@code result}
+     */
+    public ExtractionResult extract(CharSequence s, ExtractionResult result) {
+        Objects.requireNonNull(result, "result must not be null");
 
-            if (end == -1) {
-                start++;
+        TrieTree trie = index().getTrieTree();
+        result.reset(s, trie);
+        if (s == null) {
+            return result;
+        }
+
+        for (int i = 0, length = s.length(); i < length;) {
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
                 continue;
             }
 
-            end += 1;
-            String origin = toString(codePoints, start, end);
-            Emoji emoji = this.emojiMap.get(removeSkinTone(origin));
+            int end = TrieTree.end(matched);
+            result.add(i, end, TrieTree.id(matched));
+            i = end;
+        }
 
-            if (emoji == null) {
-                start++;
+        return result;
+    }
+
+    /**
+     * 惰性提取给定字符序列中的 emoji<br>
+     *
+     * 只在消费流时才向后查找 emoji, {@link Stream#findFirst()}, {@link Stream#limit(long)} 等短路操作会提前停止查找.
+     * 流支持并行, 只在不可能被 emoji 跨越的位置切分字符序列, 结果与串行相同<br>
+     *
+     * 消费流时不能修改字符序列
+     *
+     * @param s 字符序列
+     * @return 按出现顺序排列的 emoji 流
+     */
+    public Stream<ExtractedEmoji> emojis(CharSequence s) {
+        if (s == null) {
+            return Stream.empty();
+        }
+
+        return StreamSupport.stream(new EmojiSpliterator(index().getTrieTree(), s, 0, s.length()), false);
+    }
+
+    /**
+     * 检查给定的字符序列中是否包含 emoji<br>
+     *
+     * 找到第一个 emoji 后立即返回, 不会创建任何对象
+     *
+     * @param s 字符序列
+     * @return 包含 emoji 返回 {@code true}
+     */
+    public boolean containsEmoji(CharSequence s) {
+        return indexOfEmoji(s, 0) != -1;
+    }
+
+    /**
+     * 统计给定字符序列中 emoji 的数量, 与 {@link #extract(String)} 返回的列表长度相同, 但不会创建任何对象
+     *
+     * @param s 字符序列
+     * @return emoji 数量
+     */
+    public int countEmoji(CharSequence s) {
+        if (s == null) {
+            return 0;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        int count = 0;
+        for (int i = 0, length = s.length(); i < length;) {
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
             } else {
-                int si = StringUtils.computeIndex(codePoints, 0, start);
-                int ei = StringUtils.computeIndex(codePoints, 0, end);
-                extracts.add(new ExtractedEmoji(origin, si, ei, emoji));
-                start = end;
+                count++;
+                i = TrieTree.end(matched);
             }
         }
 
-        return extracts;
+        return count;
+    }
+
+    /**
+     * 查找给定字符序列中从 {@code fromIndex} 开始的第一个 emoji
+     *
+     * @param s 字符序列
+     * @param fromIndex 开始查找的字符索引
+     * @return 第一个 emoji 的起始字符索引, 未找到返回 {@code -1}
+     */
+    public int indexOfEmoji(CharSequence s, int fromIndex) {
+        if (s == null) {
+            return -1;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        for (int i = Math.max(fromIndex, 0), length = s.length(); i < length; i++) {
+            if (trie.match(s, i, length) != TrieTree.NO_MATCH) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 检查给定的字符序列是否只由 emoji 与空白字符组成, 且至少包含一个 emoji<br>
+     *
+     * 遇到第一个非 emoji 且非空白的字符时立即返回. 可用于判断消息是否应显示为大号 emoji
+     *
+     * @param s 字符序列
+     * @return 只包含 emoji 与空白字符返回 {@code true}
+     * @see Character#isWhitespace(char)
+     */
+    public boolean isEmojiOnly(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        boolean found = false;
+        for (int i = 0, length = s.length(); i < length;) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                return false;
+            }
+
+            found = true;
+            i = TrieTree.end(matched);
+        }
+
+        return found;
+    }
+
+    /**
+     * 计算给定字符序列的显示长度<br>
+     *
+     * 一个 emoji(包括肤色与 ZWJ 组合的 emoji) 计为 1, 其余文本按 {@link BreakIterator#getCharacterInstance()}
+     * 划分的字素簇计数, 例如字母与其后的组合字符计为 1. emoji 之后的组合字符计入该 emoji<br>
+     *
+     * 不考虑字符的显示宽度, 中日韩等全角字符同样计为 1
+     *
+     * @param s 字符序列
+     * @return 显示长度
+     */
+    public int displayLength(CharSequence s) {
+        if (s == null) {
+            return 0;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        BreakIterator graphemes = BreakIterator.getCharacterInstance(Locale.ROOT);
+        graphemes.setText(s.toString());
+
+        int units = 0;
+        for (int i = 0, length = s.length(); i < length; units++) {
+            long matched = trie.match(s, i, length);
+            int end = matched == TrieTree.NO_MATCH ? graphemes.following(i) : TrieTree.end(matched);
+            if (end < length && !graphemes.isBoundary(end)) {
+                end = graphemes.following(end);
+            }
+
+            i = end;
+        }
+
+        return units;
+    }
+
+    /**
+     * 将字符序列截断为不超过 {@code maxChars} 个字符(UTF-16 代码单元)<br>
+     *
+     * 不会拆分 emoji(包括肤色与 ZWJ 组合的 emoji) 与代理对, 因此结果可能短于 {@code maxChars}.
+     * 只向后查找到长度上限为止
+     *
+     * @param s 字符序列, 不能为 {@literal null}
+     * @param maxChars 最大字符数量
+     * @return 截断后的字符串
+     */
+    public String truncate(CharSequence s, int maxChars) {
+        Objects.requireNonNull(s, "The string to be truncated cannot be null");
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("maxChars must not be negative");
+        }
+
+        int length = s.length();
+        if (length <= maxChars) {
+            return s.toString();
+        }
+
+        TrieTree trie = index().getTrieTree();
+        int i = 0;
+        while (i < length) {
+            int end = unitEnd(trie, s, i, length);
+            if (end > maxChars) {
+                break;
+            }
+
+            i = end;
+        }
+
+        return s.subSequence(0, i).toString();
+    }
+
+    /**
+     * 将字符序列截断为 UTF-8 编码后不超过 {@code maxBytes} 个字节<br>
+     *
+     * 不会拆分 emoji(包括肤色与 ZWJ 组合的 emoji) 与代理对. 未配对的代理字符按 2 个字节计算
+     *
+     * @param s 字符序列, 不能为 {@literal null}
+     * @param maxBytes 最大字节数量
+     * @return 截断后的字符串
+     */
+    public String truncateUtf8(CharSequence s, int maxBytes) {
+        Objects.requireNonNull(s, "The string to be truncated cannot be null");
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+
+        int length = s.length();
+        // 每个字符编码后最多 3 个字节
+        if ((long) length * 3 <= maxBytes) {
+            return s.toString();
+        }
+
+        TrieTree trie = index().getTrieTree();
+        int bytes = 0;
+        int i = 0;
+        while (i < length) {
+            int end = unitEnd(trie, s, i, length);
+            for (int j = i; j < end && bytes <= maxBytes; j++) {
+                bytes += utf8Length(s.charAt(j));
+            }
+
+            if (bytes > maxBytes) {
+                break;
+            }
+
+            i = end;
+        }
+
+        return s.subSequence(0, i).toString();
+    }
+
+    /**
+     * 创建一个 emoji 出现次数统计
+     *
+     * @param foldSkinTone 是否将不同肤色的 emoji 合并计数
+     * @return 空的统计结果
+     * @see #countEmojis(CharSequence, EmojiHistogram)
+     */
+    public EmojiHistogram createHistogram(boolean foldSkinTone) {
+        return new EmojiHistogram(index(), foldSkinTone);
+    }
+
+    /**
+     * 统计给定字符序列中每个 emoji 的出现次数, 并累加到 {@code histogram} 中<br>
+     *
+     * 与 {@link #extract(String)} 使用相同的匹配规则, 但不会创建任何中间对象
+     *
+     * @param s 字符序列
+     * @param histogram 由该实例 {@link #createHistogram(boolean)} 创建的统计结果, 不能为 {@literal null}
+     * @return 本次统计到的 emoji 数量
+     */
+    public int countEmojis(CharSequence s, EmojiHistogram histogram) {
+        Objects.requireNonNull(histogram, "histogram must not be null");
+
+        EmojiIndex index = index();
+        if (histogram.getIndex() != index) {
+            throw new IllegalArgumentException("histogram was not created by this processor");
+        }
+
+        if (s == null) {
+            return 0;
+        }
+
+        TrieTree trie = index.getTrieTree();
+        int count = 0;
+        boolean fold = histogram.isFoldSkinTone();
+        for (int i = 0, length = s.length(); i < length;) {
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
+                continue;
+            }
+
+            int end = TrieTree.end(matched);
+            histogram.add(TrieTree.id(matched), fold ? 0 : toneOrdinal(s, i, end));
+            count++;
+            i = end;
+        }
+
+        return count;
     }
 
     /**
@@ -243,7 +704,28 @@ public class EmojiProcessor {
      * @return 替换为 emoji 的字符串
      */
     public String replaceByAlias(String s) {
+        return replaceByAlias(s, 0);
+    }
+
+    /**
+     * 将字符串中的所有 emoji 别名替换为 emoji, 允许别名存在拼写错误<br>
+     *
+     * Example:
+     * <pre>
+     * processor.replaceByAlias(":grining: and :smiley_cats:", 1);
+     * // 😀 and 😺
+     * </pre>
+     *
+     * @param s 包含 emoji 的字符串, 不能为 {@literal null}
+     * @param maxDistance 别名允许的最大编辑距离, 为 0 时与 {@link #replaceByAlias(String)} 相同
+     * @return 替换为 emoji 的字符串
+     * @see #findByAliasFuzzy(String, int)
+     */
+    public String replaceByAlias(String s, int maxDistance) {
         Objects.requireNonNull(s, "The string to be replaced cannot be null");
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
 
         if (!StringUtils.hasText(s)) {
             return "";
@@ -254,10 +736,12 @@ public class EmojiProcessor {
             return s;
         }
 
+        EmojiIndex index = index();
         List<MatchedAlias> matchedAliases = new ArrayList<>();
         do {
             String alias = matcher.group(1);
-            if (!getAliasMap().containsKey(alias)) {
+            Emoji emoji = lookupAlias(index, alias, maxDistance);
+            if (emoji == null) {
                 continue;
             }
 
@@ -265,9 +749,13 @@ public class EmojiProcessor {
                 alias,
                 matcher.start(),
                 matcher.end(),
-                getAliasMap().get(alias).getEmoji()));
+                emoji.getEmoji()));
         } while (matcher.find());
 
+        if (matchedAliases.isEmpty()) {
+            return s;
+        }
+
         StringBuilder sb = new StringBuilder((matchedAliases.size() << 1) + 1);
         for (int i = 0; i < matchedAliases.size(); i++) {
             MatchedAlias matched = matchedAliases.get(i);
@@ -291,6 +779,242 @@ public class EmojiProcessor {
         return sb.toString();
     }
 
+    /**
+     * 创建一个不包含任何步骤的处理流水线, 流水线使用该实例的索引
+     *
+     * @return 处理流水线
+     * @see EmojiPipeline
+     */
+    public EmojiPipeline pipeline() {
+        return new EmojiPipeline(this);
+    }
+
+    /**
+     * 使用 {@code renderer} 输出字符序列中的 emoji, 并转义其余文本中的 HTML 特殊字符
+     *
+     * @param s 字符序列
+     * @param renderer emoji 渲染器, 不能为 {@literal null}
+     * @return 渲染后的字符串
+     * @see #render(CharSequence, Appendable, EmojiRenderer)
+     */
+    public String render(CharSequence s, EmojiRenderer renderer) {
+        StringBuilder sb = new StringBuilder(s == null ? 0 : s.length() + (s.length() >> 1));
+        try {
+            render(s, sb, renderer);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 在一次遍历中将字符序列中的 emoji 交给 {@code renderer} 输出, 并转义其余文本中的 HTML 特殊字符<br>
+     *
+     * 不需要转义的文本按区间整体写入. 不包含肤色的 emoji 使用 {@link Emoji#getHexSlug()} 中缓存的十六进制代码点
+     *
+     * <pre>
+     * processor.render("&lt;b&gt;hi 👋🏻", out, EmojiRenderer.image("/emoji/", ".svg"));
+     * // &amp;lt;b&amp;gt;hi &lt;img class="emoji" src="/emoji/1f44b-1f3fb.svg" alt="👋🏻"&gt;
+     * </pre>
+     *
+     * @param s 字符序列
+     * @param out 输出, 不能为 {@literal null}
+     * @param renderer emoji 渲染器, 不能为 {@literal null}
+     * @throws IOException 写入输出时发生错误
+     */
+    public void render(CharSequence s, Appendable out, EmojiRenderer renderer) throws IOException {
+        Objects.requireNonNull(out, "out must not be null");
+        Objects.requireNonNull(renderer, "renderer must not be null");
+
+        if (s == null) {
+            return;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        StringBuilder slug = null;
+        int pending = 0;
+        int length = s.length();
+        for (int i = 0; i < length;) {
+            String escaped = StringUtils.escapeHtml(s.charAt(i));
+            if (escaped != null) {
+                out.append(s, pending, i).append(escaped);
+                pending = ++i;
+                continue;
+            }
+
+            long matched = trie.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
+                continue;
+            }
+
+            int end = TrieTree.end(matched);
+            Emoji emoji = trie.getEmoji(TrieTree.id(matched));
+            CharSequence hexSlug = emoji.getHexSlug();
+            if (end - i != emoji.getEmoji().length()) {
+                // 包含肤色
+                slug = slug == null ? new StringBuilder() : slug;
+                slug.setLength(0);
+                hexSlug = StringUtils.appendHexCodePoints(slug, s, i, end);
+            }
+
+            out.append(s, pending, i);
+            renderer.render(out, s, i, end, emoji, hexSlug);
+            pending = i = end;
+        }
+
+        out.append(s, pending, length);
+    }
+
+    /**
+     * 清理字符序列中无效的 emoji 组成部分
+     *
+     * @param s 字符序列
+     * @param policy 处理无效字符的方式, 不能为 {@literal null}
+     * @return 清理后的字符串
+     * @see #sanitize(CharSequence, Appendable, SanitizePolicy)
+     */
+    public String sanitize(CharSequence s, SanitizePolicy policy) {
+        StringBuilder sb = new StringBuilder(s == null ? 0 : s.length());
+        try {
+            sanitize(s, sb, policy);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 在一次遍历中清理字符序列中无效的 emoji 组成部分, 并将结果写入 {@code out}<br>
+     *
+     * 以下字符视为无效:
+     * <ul>
+     *     <li>不属于任何 emoji 的肤色, 包括连续的多个肤色中第一个之后的肤色, 以及不能修改肤色的 emoji 之后的肤色</li>
+     *     <li>不属于任何 emoji, 且前后不都是字母或组合标记的 ZWJ. 部分文字使用 ZWJ 连接字母, 这些 ZWJ 会被保留</li>
+     *     <li>不成对的代理字符</li>
+     * </ul>
+     * 有效的 emoji 与其余文本按区间整体写入. 每个字符只检查一次, 大量连续的肤色或 ZWJ 不会使处理变慢
+     *
+     * @param s 字符序列
+     * @param out 输出, 不能为 {@literal null}
+     * @param policy 处理无效字符的方式, 不能为 {@literal null}
+     * @return 删除或替换的无效字符数量, 一个肤色计为一个
+     * @throws IOException 写入输出时发生错误
+     */
+    public int sanitize(CharSequence s, Appendable out, SanitizePolicy policy) throws IOException {
+        Objects.requireNonNull(out, "out must not be null");
+        Objects.requireNonNull(policy, "policy must not be null");
+
+        if (s == null) {
+            return 0;
+        }
+
+        TrieTree trie = index().getTrieTree();
+        int pending = 0;
+        int fixed = 0;
+        int length = s.length();
+        for (int i = 0; i < length;) {
+            char c = s.charAt(i);
+            if (trie.mayStart(c)) {
+                long matched = trie.match(s, i, length);
+                if (matched != TrieTree.NO_MATCH) {
+                    i = TrieTree.end(matched);
+                    continue;
+                }
+            }
+
+            int next = i + 1;
+            boolean invalid;
+            if (Character.isHighSurrogate(c)) {
+                invalid = next == length || !Character.isLowSurrogate(s.charAt(next))
+                    || SkinTone.isSkinTone(Character.toCodePoint(c, s.charAt(next++)));
+            } else if (Character.isLowSurrogate(c)) {
+                invalid = true;
+            } else if (c == ZWJ.charAt(0)) {
+                invalid = !isJoining(s, i - 1) || !isJoining(s, next);
+            } else {
+                invalid = false;
+            }
+
+            if (invalid) {
+                out.append(s, pending, i);
+                if (policy.getReplacement() != null) {
+                    out.append(policy.getReplacement());
+                }
+                fixed++;
+                pending = next;
+            }
+            i = next;
+        }
+
+        out.append(s, pending, length);
+        return fixed;
+    }
+
+    /**
+     * 检查给定索引处的字符是否为 ZWJ 可以连接的字母或组合标记
+     */
+    private static boolean isJoining(CharSequence s, int index) {
+        if (index < 0 || index >= s.length()) {
+            return false;
+        }
+
+        char c = s.charAt(index);
+        if (Character.isSurrogate(c)) {
+            return false;
+        }
+
+        int type = Character.getType(c);
+        return Character.isLetter(c)
+            || type == Character.NON_SPACING_MARK
+            || type == Character.COMBINING_SPACING_MARK
+            || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * 创建从分块文本中提取 emoji 的提取器, 提取器使用调用时的索引
+     *
+     * @return 提取器, 不是线程安全的
+     * @see StreamingEmojiExtractor
+     */
+    public StreamingEmojiExtractor streamingExtractor() {
+        return new StreamingEmojiExtractor(index().getTrieTree());
+    }
+
+    /**
+     * 创建一个单词与 emoji 分词器, 分词器使用该实例的索引
+     *
+     * @return 分词器, 不是线程安全的
+     * @see EmojiTokenizer
+     */
+    public EmojiTokenizer tokenizer() {
+        return new EmojiTokenizer(this);
+    }
+
+    /**
+     * 创建 emoji 与数字转义的编解码器, 编解码器使用该实例的索引识别 emoji
+     *
+     * @param format 转义格式, 不能为 {@literal null}
+     * @return 编解码器
+     * @see EmojiCodec
+     */
+    public EmojiCodec codec(EmojiCodec.Format format) {
+        return new EmojiCodec(this, format);
+    }
+
+    static Emoji lookupAlias(EmojiIndex index, String alias, int maxDistance) {
+        Emoji emoji = index.getByAlias(alias);
+        if (emoji != null || maxDistance == 0 || alias.length() <= maxDistance << 1) {
+            return emoji;
+        }
+
+        return index.getPrefixIndex().findFuzzy(alias, maxDistance);
+    }
+
     private void tint(StringBuilder sb, String emoji, SkinTone tone) {
         int[] codePoints = emoji.codePoints().toArray();
         for (int i = 0; i < codePoints.length; i++) {
@@ -307,32 +1031,61 @@ public class EmojiProcessor {
         }
     }
 
-    private String toString(int[] codePoints, int from, int to) {
-        StringBuilder sb = new StringBuilder(to - from);
+    /**
+     * 计算从 {@code index} 开始的一个显示单元的结束索引, 显示单元为一个 emoji 或一个代码点
+     */
+    private static int unitEnd(TrieTree trie, CharSequence s, int index, int length) {
+        long matched = trie.match(s, index, length);
+        if (matched != TrieTree.NO_MATCH) {
+            return TrieTree.end(matched);
+        }
 
-        for (int i = from; i < to; i++) {
-            sb.appendCodePoint(codePoints[i]);
+        if (Character.isHighSurrogate(s.charAt(index))
+            && index + 1 < length
+            && Character.isLowSurrogate(s.charAt(index + 1))) {
+            return index + 2;
         }
 
-        return sb.toString();
+        return index + 1;
     }
 
-    private Map<String, Emoji> getAliasMap() {
-        if (this.aliasMap != null) {
-            return this.aliasMap;
+    /**
+     * 计算字符 UTF-8 编码后的字节数量, 代理对中的每个字符计为 2 个字节
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
         }
 
-        this.aliasMap = new HashMap<>(this.originals.size() << 1);
-        this.originals.forEach(emoji -> emoji.getAliases().forEach(alias -> this.aliasMap.put(alias, emoji)));
-        return this.aliasMap;
+        return 3;
     }
 
-    private TrieTree getTrieTree() {
-        if (this.trieTree != null) {
-            return this.trieTree;
+    /**
+     * 查找给定范围内第一个肤色
+     *
+     * @return 肤色序号, 0 代表无肤色, 其余为 {@link SkinTone#ordinal()} + 1
+     */
+    private static int toneOrdinal(CharSequence s, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '\uDFFB' && c <= '\uDFFF' && s.charAt(i - 1) == '\uD83C') {
+                return c - '\uDFFB' + 1;
+            }
         }
 
-        this.trieTree = new TrieTree(this.originals);
-        return this.trieTree;
+        return 0;
+    }
+
+    /**
+     * 获取当前使用的索引, 每次调用方法时只应获取一次, 保证同一次调用中使用的索引相同
+     *
+     * @return 索引
+     */
+    EmojiIndex index() {
+        return this.index;
     }
 }
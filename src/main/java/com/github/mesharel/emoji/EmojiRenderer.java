@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.StringUtils;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * 将 emoji 输出为标记, 由 {@link EmojiProcessor#render(CharSequence, Appendable, EmojiRenderer)} 调用
+ */
+@FunctionalInterface
+public interface EmojiRenderer {
+    /**
+     * 输出一个 emoji
+     *
+     * @param out 输出
+     * @param s 被渲染的字符序列
+     * @param start emoji 的起始字符索引
+     * @param end emoji 的结束字符索引(不包含), 包括肤色
+     * @param emoji 匹配到的 emoji
+     * @param hexSlug 包括肤色在内的十六进制代码点, 例如 {@code 1f44b-1f3fb}, 只在该方法调用期间有效
+     * @throws IOException 写入输出时发生错误
+     */
+    void render(Appendable out, CharSequence s, int start, int end, Emoji emoji, CharSequence hexSlug) throws IOException;
+
+    /**
+     * 将 emoji 输出为图片
+     *
+     * <pre>
+     * EmojiRenderer.image("https://example.com/emoji/", ".svg")
+     * // &lt;img class="emoji" src="https://example.com/emoji/1f44b-1f3fb.svg" alt="👋🏻"&gt;
+     * </pre>
+     *
+     * @param urlPrefix 图片地址前缀, 不能为 {@literal null}
+     * @param urlSuffix 图片地址后缀, 不能为 {@literal null}
+     * @return 输出 {@code img} 标签的渲染器
+     */
+    static EmojiRenderer image(String urlPrefix, String urlSuffix) {
+        Objects.requireNonNull(urlPrefix, "urlPrefix must not be null");
+        Objects.requireNonNull(urlSuffix, "urlSuffix must not be null");
+
+        String open = "<img class=\"emoji\" src=\"" + StringUtils.escapeHtml(urlPrefix);
+        String alt = StringUtils.escapeHtml(urlSuffix) + "\" alt=\"";
+        return (out, s, start, end, emoji, hexSlug) -> out.append(open)
+            .append(hexSlug)
+            .append(alt)
+            .append(s, start, end)
+            .append("\">");
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * 将字符序列切分为单词与 emoji 的分词器<br>
+ *
+ * 分词器本身就是可重复使用的游标, 每次 {@link #next()} 只向后查找到下一个词为止,
+ * 通过 getter 获取当前词的类型, 位置与 emoji, 不会创建子字符串. emoji 的标签作为同义词,
+ * 使用 {@link Emoji} 中预先驻留的字符串<br>
+ *
+ * <pre>
+ * EmojiTokenizer tokenizer = processor.tokenizer();
+ * tokenizer.reset(message);
+ * while (tokenizer.next()) {
+ *     if (tokenizer.getType() == EmojiTokenizer.Type.EMOJI) {
+ *         for (int i = 0; i &lt; tokenizer.getSynonymCount(); i++) {
+ *             tokenizer.getSynonym(i);
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * 单词为连续的字母, 数字与组合标记, 以字母或数字开头. 其余字符被跳过<br>
+ *
+ * 该类不是线程安全的
+ */
+public class EmojiTokenizer {
+    private final EmojiProcessor processor;
+    private TrieTree trieTree;
+    private CharSequence source;
+    private int index;
+
+    private Type type;
+    private int start;
+    private int end;
+    private Emoji emoji;
+
+    EmojiTokenizer(EmojiProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * 开始切分新的字符序列. 每次调用都会重新获取 emoji 索引
+     *
+     * @param s 字符序列, 不能为 {@literal null}
+     * @return 该实例
+     */
+    public EmojiTokenizer reset(CharSequence s) {
+        this.source = Objects.requireNonNull(s, "s must not be null");
+        this.trieTree = this.processor.index().getTrieTree();
+        this.index = 0;
+        this.type = null;
+        this.start = 0;
+        this.end = 0;
+        this.emoji = null;
+        return this;
+    }
+
+    /**
+     * 移动到下一个词
+     *
+     * @return 不存在下一个词返回 {@code false}
+     */
+    public boolean next() {
+        if (this.source == null) {
+            throw new IllegalStateException("reset must be called first");
+        }
+
+        CharSequence s = this.source;
+        int length = s.length();
+        for (int i = this.index; i < length;) {
+            long matched = matchEmoji(s, i, length);
+            if (matched != TrieTree.NO_MATCH) {
+                return token(Type.EMOJI, i, TrieTree.end(matched), this.trieTree.getEmoji(TrieTree.id(matched)));
+            }
+
+            int cp = Character.codePointAt(s, i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+
+            int j = i + Character.charCount(cp);
+            while (j < length) {
+                cp = Character.codePointAt(s, j);
+                if (!isWordPart(cp) || matchEmoji(s, j, length) != TrieTree.NO_MATCH) {
+                    break;
+                }
+                j += Character.charCount(cp);
+            }
+
+            return token(Type.WORD, i, j, null);
+        }
+
+        this.index = length;
+        this.type = null;
+        this.emoji = null;
+        return false;
+    }
+
+    private long matchEmoji(CharSequence s, int index, int length) {
+        return this.trieTree.mayStart(s.charAt(index)) ? this.trieTree.match(s, index, length) : TrieTree.NO_MATCH;
+    }
+
+    private boolean token(Type type, int start, int end, Emoji emoji) {
+        this.type = type;
+        this.start = start;
+        this.end = end;
+        this.emoji = emoji;
+        this.index = end;
+        return true;
+    }
+
+    private static boolean isWordPart(int cp) {
+        if (Character.isLetterOrDigit(cp)) {
+            return true;
+        }
+
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    /**
+     * @return 当前词的类型, 未调用 {@link #next()} 或已结束时为 {@literal null}
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return 当前词的起始字符索引
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return 当前词的结束字符索引(不包含), emoji 包括肤色
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return 当前 emoji 对应的 emoji, 不包含肤色. 单词为 {@literal null}
+     */
+    public Emoji getEmoji() {
+        return emoji;
+    }
+
+    /**
+     * @return 当前词的同义词数量, 即 emoji 的标签数量. 单词为 0
+     */
+    public int getSynonymCount() {
+        return this.emoji == null ? 0 : this.emoji.getTagTokens().length;
+    }
+
+    /**
+     * @param index 同义词索引
+     * @return 驻留后的同义词
+     */
+    public String getSynonym(int index) {
+        if (index < 0 || index >= getSynonymCount()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSynonymCount());
+        }
+
+        return this.emoji.getTagTokens()[index];
+    }
+
+    /**
+     * @return 正在切分的字符序列
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiTokenizer.class.getSimpleName() + "[", "]")
+            .add("type=" + type)
+            .add("start=" + start)
+            .add("end=" + end)
+            .toString();
+    }
+
+    /**
+     * 词的类型
+     */
+    public enum Type {
+        WORD,
+        EMOJI
+    }
+}
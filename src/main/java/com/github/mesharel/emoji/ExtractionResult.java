@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 可重复使用的 emoji 提取结果<br>
+ *
+ * 匹配结果保存在起始索引, 结束索引与 emoji 编号三个 {@code int} 数组中,
+ * emoji 字符串与 {@link ExtractedEmoji} 只在获取时创建.
+ * 在循环中重复传入同一个实例给 {@link EmojiProcessor#extract(CharSequence, ExtractionResult)},
+ * 数组容量足够后提取过程不会再创建任何对象<br>
+ *
+ * 该类不是线程安全的. 使用结果期间不能修改被提取的字符序列
+ */
+public class ExtractionResult {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] starts;
+    private int[] ends;
+    private int[] emojiIds;
+    private int size;
+    private CharSequence source;
+    private TrieTree trieTree;
+
+    public ExtractionResult() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 初始容量
+     */
+    public ExtractionResult(int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.starts = new int[initial];
+        this.ends = new int[initial];
+        this.emojiIds = new int[initial];
+    }
+
+    /**
+     * 清空结果, 保留已分配的数组
+     */
+    public void reset() {
+        this.size = 0;
+        this.source = null;
+        this.trieTree = null;
+    }
+
+    void reset(CharSequence source, TrieTree trieTree) {
+        this.size = 0;
+        this.source = source;
+        this.trieTree = trieTree;
+    }
+
+    void add(int start, int end, int emojiId) {
+        if (this.size == this.starts.length) {
+            int capacity = this.size << 1;
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.emojiIds = Arrays.copyOf(this.emojiIds, capacity);
+        }
+
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.emojiIds[this.size] = emojiId;
+        this.size++;
+    }
+
+    /**
+     * @return 提取到的 emoji 数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return 被提取的字符序列
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * @param index 结果索引
+     * @return 第 {@code index} 个 emoji 的起始字符索引
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return this.starts[index];
+    }
+
+    /**
+     * @param index 结果索引
+     * @return 第 {@code index} 个 emoji 的结束字符索引(不包含)
+     */
+    public int getEnd(int index) {
+        checkIndex(index);
+        return this.ends[index];
+    }
+
+    /**
+     * 获取第 {@code index} 个 emoji 对应的 emoji, 不包含肤色
+     *
+     * @param index 结果索引
+     * @return emoji
+     */
+    public Emoji getDetail(int index) {
+        checkIndex(index);
+        return this.trieTree.getEmoji(this.emojiIds[index]);
+    }
+
+    /**
+     * 获取第 {@code index} 个 emoji 在字符序列中的原始字符串, 每次调用都会创建新的字符串
+     *
+     * @param index 结果索引
+     * @return 原始字符串, 包括肤色
+     */
+    public String getEmoji(int index) {
+        checkIndex(index);
+        return this.source.subSequence(this.starts[index], this.ends[index]).toString();
+    }
+
+    /**
+     * 创建第 {@code index} 个 emoji 的 {@link ExtractedEmoji}
+     *
+     * @param index 结果索引
+     * @return 提取出的 emoji
+     */
+    public ExtractedEmoji get(int index) {
+        return new ExtractedEmoji(getEmoji(index), this.starts[index], this.ends[index], getDetail(index));
+    }
+
+    /**
+     * 将结果转换为 {@link ExtractedEmoji} 列表
+     *
+     * @return 不可修改列表
+     */
+    public List<ExtractedEmoji> toList() {
+        if (this.size == 0) {
+            return Collections.emptyList();
+        }
+
+        List<ExtractedEmoji> extracts = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            extracts.add(get(i));
+        }
+
+        return Collections.unmodifiableList(extracts);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ExtractionResult.class.getSimpleName() + "[", "]")
+            .add("size=" + size)
+            .add("starts=" + Arrays.toString(Arrays.copyOf(starts, size)))
+            .add("ends=" + Arrays.toString(Arrays.copyOf(ends, size)))
+            .toString();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可以在运行时替换 emoji 列表的 {@link EmojiProcessor}<br>
+ *
+ * emoji 映射, 别名映射与字典树等索引保存在同一个不可修改的快照中. 重新加载时先创建完整的新快照,
+ * 再原子地替换旧快照. 每次方法调用只读取一次快照, 正在执行的调用会在旧快照上完成, 读取过程不需要加锁<br>
+ *
+ * {@link #register(Emoji)} 与 {@link #unregister(Emoji)} 只复制字典树中发生变化的路径,
+ * 开销与 emoji 的长度及路径上节点的子节点数量有关, 与 emoji 总数无关. 修改操作之间互斥, 读取仍然不需要加锁.
+ * 移除与替换留下的废弃编号多于有效编号时, 下一次修改会重新创建整个索引, 因此反复修改不会使内存无限增长<br>
+ *
+ * 重新加载或修改后, 之前创建的 {@link EmojiHistogram} 不能再用于统计
+ */
+public class ReloadableEmojiProcessor extends EmojiProcessor {
+    private final AtomicReference<EmojiIndex> snapshot;
+
+    public ReloadableEmojiProcessor(List<Emoji> emojis) {
+        this.snapshot = new AtomicReference<>(createSnapshot(emojis));
+    }
+
+    /**
+     * 使用给定的 emoji 列表重新创建所有索引, 并替换当前快照<br>
+     *
+     * 索引在调用线程中创建, 创建期间其他线程继续使用旧快照
+     *
+     * @param emojis 新的 emoji 列表, 不能为 {@literal null}
+     */
+    public void reload(List<Emoji> emojis) {
+        EmojiIndex created = createSnapshot(emojis);
+        synchronized (this.snapshot) {
+            this.snapshot.set(created);
+        }
+    }
+
+    /**
+     * 添加一个 emoji, 已存在相同 unicode 编码的 emoji 时替换原 emoji
+     *
+     * @param emoji emoji, 不能为 {@literal null}, unicode 编码不能为空
+     */
+    public void register(Emoji emoji) {
+        Objects.requireNonNull(emoji, "emoji must not be null");
+        if (!StringUtils.hasText(emoji.getEmoji())) {
+            throw new IllegalArgumentException("emoji must not be empty");
+        }
+
+        synchronized (this.snapshot) {
+            this.snapshot.set(this.snapshot.get().register(emoji));
+        }
+    }
+
+    /**
+     * 移除与给定 emoji unicode 编码相同的 emoji
+     *
+     * @param emoji emoji, 不能为 {@literal null}
+     * @return emoji 存在并被移除返回 {@code true}
+     */
+    public boolean unregister(Emoji emoji) {
+        Objects.requireNonNull(emoji, "emoji must not be null");
+        if (!StringUtils.hasText(emoji.getEmoji())) {
+            return false;
+        }
+
+        synchronized (this.snapshot) {
+            EmojiIndex current = this.snapshot.get();
+            EmojiIndex removed = current.unregister(emoji);
+            this.snapshot.set(removed);
+            return removed != current;
+        }
+    }
+
+    /**
+     * 在给定的 {@code executor} 中重新加载 emoji 列表
+     *
+     * @param emojis 新的 emoji 列表, 不能为 {@literal null}
+     * @param executor 创建索引的线程池, 不能为 {@literal null}
+     * @return 替换完成后结束的 {@link CompletableFuture}
+     * @see #reload(List)
+     */
+    public CompletableFuture<Void> reloadAsync(List<Emoji> emojis, Executor executor) {
+        Objects.requireNonNull(emojis, "emojis must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+
+        return CompletableFuture.runAsync(() -> reload(emojis), executor);
+    }
+
+    /**
+     * @return 当前快照中的 emoji 列表, 不可修改
+     */
+    public List<Emoji> getEmojis() {
+        return this.snapshot.get().getEmojis();
+    }
+
+    @Override
+    EmojiIndex index() {
+        return this.snapshot.get();
+    }
+
+    private static EmojiIndex createSnapshot(List<Emoji> emojis) {
+        Objects.requireNonNull(emojis, "emojis must not be null");
+
+        return new EmojiIndex(Collections.unmodifiableList(new ArrayList<>(emojis))).warmUp();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ReloadableEmojiProcessor.class.getSimpleName() + "[", "]")
+            .add("snapshot=" + snapshot.get())
+            .toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+/**
+ * {@link EmojiProcessor#sanitize(CharSequence, Appendable, SanitizePolicy)} 处理无效字符的方式
+ */
+public enum SanitizePolicy {
+    /** 删除无效字符 */
+    REMOVE(null),
+    /** 将每个无效字符替换为 U+FFFD */
+    REPLACE("\uFFFD");
+
+    private final String replacement;
+
+    SanitizePolicy(String replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * @return 替换的字符串, 删除时为 {@literal null}
+     */
+    public String getReplacement() {
+        return replacement;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import com.github.mesharel.emoji.internal.TrieTree;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * 从分块到达的文本中提取 emoji<br>
+ *
+ * 每次 {@link #feed(CharSequence, Consumer)} 只输出已经完整的 emoji, 可能跨越分块边界的部分保留到下一次,
+ * 提取结果与一次性提取完整文本相同. emoji 的位置为在整个文本中的位置<br>
+ *
+ * 保留的字符不超过 256 个加上一个分块的长度, 超过该长度的 emoji (例如后面跟随大量肤色) 可能被拆分.
+ * 整个文本的长度不能超过 {@link Integer#MAX_VALUE}<br>
+ *
+ * 使用创建时的索引. 该类不是线程安全的
+ *
+ * @see EmojiProcessor#streamingExtractor()
+ */
+public class StreamingEmojiExtractor {
+    /** 找不到安全的切分位置时, 末尾保留的字符数量 */
+    private static final int LOOKAHEAD = 1 << 8;
+
+    private final TrieTree trieTree;
+    /** 尚未处理的字符 */
+    private final StringBuilder pending = new StringBuilder();
+    /** {@link #pending} 第一个字符在整个文本中的位置 */
+    private long offset;
+    private boolean finished;
+
+    StreamingEmojiExtractor(TrieTree trieTree) {
+        this.trieTree = trieTree;
+    }
+
+    /**
+     * 追加一个分块, 并输出其中已经完整的 emoji
+     *
+     * @param chunk 分块, 不能为 {@literal null}
+     * @param action 接收 emoji, 不能为 {@literal null}
+     */
+    public void feed(CharSequence chunk, Consumer<? super ExtractedEmoji> action) {
+        Objects.requireNonNull(chunk, "chunk must not be null");
+        Objects.requireNonNull(action, "action must not be null");
+        if (this.finished) {
+            throw new IllegalStateException("extractor has finished");
+        }
+
+        this.pending.append(chunk);
+        process(safeLimit(), action);
+    }
+
+    /**
+     * 结束文本, 输出剩余的 emoji. 之后不能再追加分块
+     *
+     * @param action 接收 emoji, 不能为 {@literal null}
+     */
+    public void finish(Consumer<? super ExtractedEmoji> action) {
+        Objects.requireNonNull(action, "action must not be null");
+        if (this.finished) {
+            return;
+        }
+
+        this.finished = true;
+        process(this.pending.length(), action);
+    }
+
+    /**
+     * @return 已经处理完成的字符数量
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 查找最后一个不会被 emoji 跨越的位置, 该位置前的字符不可能出现在任何 emoji 中
+     */
+    private int safeLimit() {
+        int length = this.pending.length();
+        for (int i = length; i > 0 && i > length - LOOKAHEAD; i--) {
+            if (!this.trieTree.mayContain(this.pending.charAt(i - 1))) {
+                return i;
+            }
+        }
+
+        return Math.max(0, length - LOOKAHEAD);
+    }
+
+    /**
+     * 输出起始位置在 {@code limit} 之前的 emoji, 并删除已处理的字符
+     */
+    private void process(int limit, Consumer<? super ExtractedEmoji> action) {
+        CharSequence s = this.pending;
+        int length = s.length();
+        int i = 0;
+        while (i < limit) {
+            long matched = this.trieTree.match(s, i, length);
+            if (matched == TrieTree.NO_MATCH) {
+                i++;
+                continue;
+            }
+
+            int end = TrieTree.end(matched);
+            action.accept(new ExtractedEmoji(
+                this.pending.substring(i, end),
+                Math.toIntExact(this.offset + i),
+                Math.toIntExact(this.offset + end),
+                this.trieTree.getEmoji(TrieTree.id(matched))));
+            i = end;
+        }
+
+        this.pending.delete(0, i);
+        this.offset += i;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", StreamingEmojiExtractor.class.getSimpleName() + "[", "]")
+            .add("offset=" + offset)
+            .add("pending=" + pending.length())
+            .add("finished=" + finished)
+            .toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.internal;
+
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 使用 CLOCK 算法淘汰的定长并发缓存<br>
+ *
+ * 命中时只设置条目的访问标记, 不需要移动条目或加锁. 插入时时钟指针扫描环形数组,
+ * 清除被访问过的条目的标记, 淘汰第一个未被访问过的条目<br>
+ *
+ * 每个条目带有版本, 版本不同的条目视为未命中, 用于在数据源改变后使旧条目失效.
+ * 替换旧版本的条目时, 新条目直接使用旧条目的槽位, 重新加载后不会有槽位被映射中已不存在的条目占用;
+ * 无法复用时 (旧条目尚未放入或已被淘汰) 才由时钟指针分配槽位, 扫描时优先使用这类失效的槽位
+ *
+ * @param <V> 缓存值的类型, 必须不可修改
+ */
+public class ClockCache<V> {
+    private final ConcurrentHashMap<String, Entry<V>> map;
+    private final AtomicReferenceArray<Entry<V>> ring;
+    private final AtomicInteger hand = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity 最大条目数量, 必须大于 0
+     */
+    public ClockCache(int capacity) {
+        this.map = new ConcurrentHashMap<>(capacity);
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @param key 键
+     * @param version 当前版本, 使用 {@code ==} 比较
+     * @return 未命中返回 {@literal null}
+     */
+    public V get(String key, Object version) {
+        Entry<V> entry = this.map.get(key);
+        if (entry == null || entry.version != version) {
+            this.misses.increment();
+            return null;
+        }
+
+        // 已经标记时不再写入, 避免读取时写共享缓存行
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        this.hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * 插入或替换条目, 缓存已满时淘汰一个条目<br>
+     *
+     * 先在映射中占用键, 再放入环形数组. 已存在相同版本的条目时直接返回,
+     * 因此同一个键只占用一个槽位. 淘汰时只有映射仍指向被淘汰的条目才会删除,
+     * 所有操作完成后映射中的条目数量不超过容量
+     *
+     * @param key 键
+     * @param version 计算该值时的版本
+     * @param value 值, 不能为 {@literal null}
+     */
+    public void put(String key, Object version, V value) {
+        Entry<V> entry = new Entry<>(key, version, value);
+        Entry<V> existing = this.map.putIfAbsent(key, entry);
+        if (existing != null) {
+            if (existing.version == version || !this.map.replace(key, existing, entry)) {
+                // 其他线程已经放入该键, 或替换了旧版本的条目
+                return;
+            }
+
+            int slot = existing.slot;
+            if (slot != -1 && this.ring.compareAndSet(slot, existing, entry)) {
+                entry.slot = slot;
+                return;
+            }
+        }
+
+        int capacity = this.ring.length();
+        for (int swept = 0; ; swept++) {
+            int slot = Math.floorMod(this.hand.getAndIncrement(), capacity);
+            Entry<V> victim = this.ring.get(slot);
+
+            // 映射中已不存在的条目直接淘汰. 扫描两圈后所有标记都已被清除, 不会无限循环
+            if (victim != null && victim.referenced && swept < capacity << 1 && this.map.get(victim.key) == victim) {
+                victim.referenced = false;
+                continue;
+            }
+
+            if (this.ring.compareAndSet(slot, victim, entry)) {
+                entry.slot = slot;
+                if (victim != null) {
+                    this.map.remove(victim.key, victim);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清除所有条目, 不会重置命中统计
+     */
+    public void clear() {
+        for (int i = 0; i < this.ring.length(); i++) {
+            this.ring.set(i, null);
+        }
+        this.map.clear();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return 当前的条目数量, 包括已失效的条目. 存在正在执行的 {@link #put(String, Object, Object)} 时可能暂时超过容量
+     */
+    public int size() {
+        return this.map.size();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ClockCache.class.getSimpleName() + "[", "]")
+            .add("capacity=" + ring.length())
+            .add("size=" + map.size())
+            .add("hits=" + hits.sum())
+            .add("misses=" + misses.sum())
+            .toString();
+    }
+
+    private static class Entry<V> {
+        private final String key;
+        private final Object version;
+        private final V value;
+        /** 自上次时钟指针经过后是否被访问过 */
+        private volatile boolean referenced;
+        /** 在环形数组中的槽位, 尚未放入时为 {@code -1}. 被淘汰后不会重置, 使用前需要比较槽位中的条目 */
+        private volatile int slot = -1;
+
+        Entry(String key, Object version, V value) {
+            this.key = key;
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
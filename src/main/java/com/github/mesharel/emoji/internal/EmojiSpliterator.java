@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.internal;
+
+import com.github.mesharel.emoji.ExtractedEmoji;
+
+import java.util.Spliterator;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * 按需匹配 emoji 的 {@link Spliterator}<br>
+ *
+ * 每次 {@link #tryAdvance(Consumer)} 只向后查找到下一个 emoji 为止.
+ * {@link #trySplit()} 只在 {@link TrieTree#isBoundary(CharSequence, int)} 处切分, 保证并行时结果与串行相同
+ */
+public class EmojiSpliterator implements Spliterator<ExtractedEmoji> {
+    /** 小于该长度的范围不再切分 */
+    private static final int MIN_SPLIT = 1 << 10;
+
+    private final TrieTree trieTree;
+    private final CharSequence s;
+    private int index;
+    private final int fence;
+
+    public EmojiSpliterator(TrieTree trieTree, CharSequence s, int index, int fence) {
+        this.trieTree = trieTree;
+        this.s = s;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ExtractedEmoji> action) {
+        while (this.index < this.fence) {
+            int start = this.index;
+            long matched = this.trieTree.match(this.s, start, this.fence);
+            if (matched == TrieTree.NO_MATCH) {
+                this.index++;
+                continue;
+            }
+
+            int end = TrieTree.end(matched);
+            this.index = end;
+            action.accept(new ExtractedEmoji(
+                this.s.subSequence(start, end).toString(),
+                start,
+                end,
+                this.trieTree.getEmoji(TrieTree.id(matched))));
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public Spliterator<ExtractedEmoji> trySplit() {
+        if (this.fence - this.index < MIN_SPLIT) {
+            return null;
+        }
+
+        int middle = (this.index + this.fence) >>> 1;
+        int split = -1;
+        for (int i = middle; i < this.fence; i++) {
+            if (this.trieTree.isBoundary(this.s, i)) {
+                split = i;
+                break;
+            }
+        }
+
+        for (int i = middle - 1; split == -1 && i > this.index; i--) {
+            if (this.trieTree.isBoundary(this.s, i)) {
+                split = i;
+            }
+        }
+
+        if (split == -1) {
+            return null;
+        }
+
+        EmojiSpliterator prefix = new EmojiSpliterator(this.trieTree, this.s, this.index, split);
+        this.index = split;
+        return prefix;
+    }
+
+    /**
+     * @return 剩余的字符数量, emoji 数量不会超过该值
+     */
+    @Override
+    public long estimateSize() {
+        return this.fence - this.index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiSpliterator.class.getSimpleName() + "[", "]")
+            .add("index=" + index)
+            .add("fence=" + fence)
+            .toString();
+    }
+}
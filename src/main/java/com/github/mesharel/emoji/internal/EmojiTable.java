@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.internal;
+
+import com.github.mesharel.emoji.Emoji;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.StringJoiner;
+
+/**
+ * emoji 编号 -> emoji 的映射<br>
+ *
+ * 编号只会追加, 不会修改. 追加时多个版本共享同一个数组, 每个版本只能看到自己长度以内的元素,
+ * 因此追加的开销与数组长度无关<br>
+ *
+ * 从同一个版本追加多次时(例如多个租户共享同一个基础映射), 新版本只保存追加的元素,
+ * 较小的编号从父版本中读取, 不会复制父版本的数组
+ */
+public class EmojiTable {
+    /** 分支时本版本元素数量超过该值则引用父版本, 否则直接复制 */
+    private static final int BRANCH_COPY_LIMIT = 64;
+
+    /** 编号小于 {@link #offset} 的元素所在的版本 */
+    private final EmojiTable parent;
+    private final int offset;
+    private final Shared shared;
+    private final int size;
+
+    public EmojiTable(Collection<Emoji> emojis) {
+        this(null, 0, new Shared(emojis.toArray(new Emoji[0]), emojis.size()), emojis.size());
+    }
+
+    private EmojiTable(EmojiTable parent, int offset, Shared shared, int size) {
+        this.parent = parent;
+        this.offset = offset;
+        this.shared = shared;
+        this.size = size;
+    }
+
+    /**
+     * 追加一个 emoji, 新 emoji 的编号为 {@link #size()}
+     *
+     * @param emoji emoji
+     * @return 包含新 emoji 的映射, 该实例不会改变
+     */
+    public EmojiTable append(Emoji emoji) {
+        int local = this.size - this.offset;
+        synchronized (this.shared) {
+            boolean latest = local == this.shared.used;
+            // 只有最新的版本可以直接写入共享数组
+            if (latest && local < this.shared.emojis.length) {
+                this.shared.emojis[local] = emoji;
+                this.shared.used++;
+                return new EmojiTable(this.parent, this.offset, this.shared, this.size + 1);
+            }
+
+            // 数组已满时, 只有本版本的元素不少于父版本时才分支, 保证版本链的长度为对数级别
+            if (local > BRANCH_COPY_LIMIT && (!latest || local >= this.offset)) {
+                Shared branch = new Shared(new Emoji[16], 1);
+                branch.emojis[0] = emoji;
+                return new EmojiTable(this, this.size, branch, this.size + 1);
+            }
+        }
+
+        Emoji[] emojis = Arrays.copyOf(this.shared.emojis, Math.max(local << 1, local + 16));
+        emojis[local] = emoji;
+        return new EmojiTable(this.parent, this.offset, new Shared(emojis, local + 1), this.size + 1);
+    }
+
+    /**
+     * @param id emoji 编号
+     * @return emoji
+     */
+    public Emoji get(int id) {
+        if (id >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + id + ", Size: " + this.size);
+        }
+
+        return id < this.offset ? this.parent.get(id) : this.shared.emojis[id - this.offset];
+    }
+
+    /**
+     * @return emoji 编号的数量
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiTable.class.getSimpleName() + "[", "]")
+            .add("size=" + size)
+            .toString();
+    }
+
+    /**
+     * 多个版本共享的数组
+     */
+    private static class Shared {
+        private final Emoji[] emojis;
+        /** 已写入的元素数量 */
+        private int used;
+
+        Shared(Emoji[] emojis, int used) {
+            this.emojis = emojis;
+            this.used = used;
+        }
+    }
+}
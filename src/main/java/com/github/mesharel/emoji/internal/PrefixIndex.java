@@ -0,0 +1,696 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji.internal;
+
+import com.github.mesharel.emoji.Emoji;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.StringJoiner;
+
+/**
+ * emoji 别名与标签的前缀索引<br>
+ *
+ * 索引为字符字典树, 每个节点预先保存该前缀下排名最高的 {@link #MAX_CACHED} 个 emoji,
+ * 查询时只需沿前缀走到对应节点即可<br>
+ *
+ * 同时支持按编辑距离查找别名, 遍历字典树时逐层计算编辑距离矩阵的一行,
+ * 当某一行的最小值超过最大编辑距离时跳过整个子树<br>
+ *
+ * 创建完成后不会再修改. {@link #register(Emoji, EmojiTable)} 与 {@link #unregister(Emoji, int)}
+ * 只复制经过的节点并重新计算这些节点的候选, 返回共享其余节点的新索引.
+ * {@link #view(long[])} 创建的视图与原索引共享所有节点, 查询时跳过不可见的 emoji
+ */
+public class PrefixIndex {
+    /** 每个节点缓存的候选数量 */
+    public static final int MAX_CACHED = 16;
+
+    private static final long[] EMPTY = new long[0];
+    private static final long TAG_FLAG = 1L << 62;
+
+    private final Node root;
+    private final EmojiTable table;
+    /** 最长的别名或标签长度 */
+    private final int depth;
+    /** 可见的 emoji 编号位图, 为 {@literal null} 时所有 emoji 可见 */
+    private final long[] members;
+
+    public PrefixIndex(Collection<Emoji> emojis) {
+        this.root = new Node();
+        this.table = new EmojiTable(emojis);
+
+        int depth = 0;
+        for (int id = 0; id < this.table.size(); id++) {
+            Emoji emoji = this.table.get(id);
+            if (emoji == null) {
+                continue;
+            }
+
+            for (String alias : emoji.getAliases()) {
+                depth = Math.max(depth, insert(alias, score(false, alias, id)));
+            }
+            for (String tag : emoji.getTags()) {
+                depth = Math.max(depth, insert(tag, score(true, tag, id)));
+            }
+        }
+
+        this.depth = depth;
+        this.members = null;
+
+        this.root.collect();
+    }
+
+    private PrefixIndex(Node root, EmojiTable table, int depth, long[] members) {
+        this.root = root;
+        this.table = table;
+        this.depth = depth;
+        this.members = members;
+    }
+
+    /**
+     * 创建只包含给定编号的 emoji 的视图, 该实例不会改变
+     *
+     * @param members 可见的 emoji 编号位图, 创建后不能修改
+     * @return 与该实例共享节点的索引
+     * @see TrieTree#view(long[])
+     */
+    public PrefixIndex view(long[] members) {
+        return new PrefixIndex(this.root, this.table, this.depth, members);
+    }
+
+    /**
+     * 创建包含给定 emoji 的索引, 该实例不会改变<br>
+     *
+     * 新 emoji 的编号为 {@code table} 的最后一个编号, 与 {@link TrieTree#register(Emoji, EmojiTable)} 相同
+     *
+     * @param emoji emoji
+     * @param table 追加 emoji 后的编号映射
+     * @return 新的索引
+     */
+    public PrefixIndex register(Emoji emoji, EmojiTable table) {
+        int id = table.size() - 1;
+        Node root = this.root;
+        int depth = this.depth;
+
+        for (String alias : emoji.getAliases()) {
+            if (StringUtils.hasText(alias)) {
+                root = copyInsert(root, alias, 0, score(false, alias, id));
+                depth = Math.max(depth, alias.length());
+            }
+        }
+        for (String tag : emoji.getTags()) {
+            if (StringUtils.hasText(tag)) {
+                root = copyInsert(root, tag, 0, score(true, tag, id));
+                depth = Math.max(depth, tag.length());
+            }
+        }
+
+        return new PrefixIndex(root, table, depth, TrieTree.withMember(this.members, id));
+    }
+
+    /**
+     * 创建不包含给定 emoji 的索引, 该实例不会改变
+     *
+     * @param emoji emoji
+     * @param id emoji 编号
+     * @return 新的索引
+     */
+    public PrefixIndex unregister(Emoji emoji, int id) {
+        Node root = this.root;
+        for (String alias : emoji.getAliases()) {
+            root = copyRemove(root, alias, 0, id);
+        }
+        for (String tag : emoji.getTags()) {
+            root = copyRemove(root, tag, 0, id);
+        }
+
+        return new PrefixIndex(root, this.table, this.depth, this.members);
+    }
+
+    /**
+     * 查找别名与给定字符串完全相同(区分大小写)的 emoji<br>
+     *
+     * 多个 emoji 使用相同的别名时, 返回编号最大, 即最后加入的 emoji
+     *
+     * @param alias 别名, 不能为 {@literal null}
+     * @return 未找到返回 {@literal null}
+     */
+    public Emoji find(String alias) {
+        Node node = this.root;
+        for (int i = 0; i < alias.length() && node != null; i++) {
+            node = node.getNode(Character.toLowerCase(alias.charAt(i)));
+        }
+
+        if (node == null || node == this.root) {
+            return null;
+        }
+
+        Emoji found = null;
+        int foundId = -1;
+        for (long score : node.own) {
+            int id = (int) score;
+            if ((score & TAG_FLAG) != 0 || id < foundId || !TrieTree.isMember(this.members, id)) {
+                continue;
+            }
+
+            Emoji emoji = this.table.get(id);
+            if (emoji.getAliases().contains(alias)) {
+                found = emoji;
+                foundId = id;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * 查找别名或标签以 {@code prefix} 开头的 emoji, 忽略大小写<br>
+     *
+     * 结果按以下顺序排列: 别名匹配优先于标签匹配, 较短的别名或标签优先, 其余按 emoji 在列表中的顺序
+     *
+     * @param prefix 前缀, 不能为 {@literal null}
+     * @param limit 最大数量
+     * @return 不可修改列表
+     */
+    public List<Emoji> suggest(CharSequence prefix, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Node node = this.root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.getNode(Character.toLowerCase(prefix.charAt(i)));
+        }
+
+        if (node == null) {
+            return Collections.emptyList();
+        }
+
+        // 缓存的候选少于 MAX_CACHED 个时已经包含子树中的所有候选
+        long[] ranked = node.top;
+        if (ranked.length == MAX_CACHED && (limit > MAX_CACHED || countMembers(ranked, limit) < limit)) {
+            // 请求数量超过缓存数量, 或视图中缓存的候选可见的数量不足
+            ranked = rank(node, limit);
+        }
+
+        Emoji[] found = new Emoji[countMembers(ranked, limit)];
+        for (int i = 0, size = 0; size < found.length; i++) {
+            if (TrieTree.isMember(this.members, (int) ranked[i])) {
+                found[size++] = this.table.get((int) ranked[i]);
+            }
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(found));
+    }
+
+    /**
+     * 查找与给定别名编辑距离(Levenshtein)最小的 emoji, 忽略大小写, 不包括标签<br>
+     *
+     * 距离相同时使用与 {@link #suggest(CharSequence, int)} 相同的排名
+     *
+     * @param alias 别名
+     * @param maxDistance 最大编辑距离
+     * @return 未找到返回 {@literal null}
+     */
+    public Emoji findFuzzy(CharSequence alias, int maxDistance) {
+        Fuzzy fuzzy = new Fuzzy(alias, maxDistance, this.depth, this.members);
+        for (int i = 0; i < this.root.children.length; i++) {
+            Node child = this.root.children[i];
+            if (child.aliased) {
+                fuzzy.visit(this.root.keys[i], child, 1);
+            }
+        }
+
+        return fuzzy.best == -1 ? null : this.table.get((int) fuzzy.best);
+    }
+
+    /**
+     * @return 插入的字符数量
+     */
+    private int insert(String key, long score) {
+        if (key == null || key.isEmpty()) {
+            return 0;
+        }
+
+        Node node = this.root;
+        for (int i = 0; i < key.length(); i++) {
+            char c = Character.toLowerCase(key.charAt(i));
+            Node child = node.getNode(c);
+            if (child == null) {
+                child = new Node();
+                node.insertNode(c, child);
+            }
+
+            node = child;
+        }
+
+        node.own = merge(node.own, new long[]{score}, Integer.MAX_VALUE);
+        return key.length();
+    }
+
+    /**
+     * @return 候选中可见的数量, 不超过 {@code limit}
+     */
+    private int countMembers(long[] ranked, int limit) {
+        if (this.members == null) {
+            return Math.min(limit, ranked.length);
+        }
+
+        int count = 0;
+        for (int i = 0; i < ranked.length && count < limit; i++) {
+            if (TrieTree.isMember(this.members, (int) ranked[i])) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 按排名从高到低遍历 {@code node} 下的候选, 得到 {@code limit} 个不同的可见 emoji 后立即结束<br>
+     *
+     * 每个节点缓存的第一个候选是该子树中分数最小的候选, 以此作为节点在优先队列中的排序依据.
+     * 只有当节点的最小分数排在已输出的候选之前时才会展开该节点, 因此不会遍历整个子树.
+     * 缓存的候选少于 {@link #MAX_CACHED} 个的节点直接读取缓存, 不再展开子节点
+     *
+     * @return 按分数升序排列的可见候选
+     */
+    private long[] rank(Node node, int limit) {
+        long[] ranked = new long[Math.min(limit, MAX_CACHED << 2)];
+        int size = 0;
+        // 已输出的 emoji 编号, 同一个 emoji 只保留分数最小的候选
+        long[] seen = new long[(this.table.size() + 63) >>> 6];
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        Cursor.offer(queue, node);
+
+        while (size < limit && !queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            if (cursor.node != null) {
+                if (cursor.node.top.length < MAX_CACHED) {
+                    queue.add(new Cursor(cursor.node.top));
+                    continue;
+                }
+                if (cursor.node.own.length != 0) {
+                    queue.add(new Cursor(cursor.node.own));
+                }
+                for (Node child : cursor.node.children) {
+                    Cursor.offer(queue, child);
+                }
+                continue;
+            }
+
+            long score = cursor.key;
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+
+            int id = (int) score;
+            if ((seen[id >>> 6] & (1L << id)) != 0) {
+                continue;
+            }
+
+            seen[id >>> 6] |= 1L << id;
+            if (!TrieTree.isMember(this.members, id)) {
+                continue;
+            }
+            if (size == ranked.length) {
+                ranked = Arrays.copyOf(ranked, size << 1);
+            }
+            ranked[size++] = score;
+        }
+
+        return size == ranked.length ? ranked : Arrays.copyOf(ranked, size);
+    }
+
+    private static Node copyInsert(Node node, String key, int index, long score) {
+        Node copy = node == null ? new Node() : node.copy();
+        if (index == key.length()) {
+            copy.own = merge(copy.own, new long[]{score}, Integer.MAX_VALUE);
+        } else {
+            char c = Character.toLowerCase(key.charAt(index));
+            copy.putNode(c, copyInsert(node == null ? null : node.getNode(c), key, index + 1, score));
+        }
+
+        copy.refresh();
+        return copy;
+    }
+
+    /**
+     * @return 复制后的节点, 节点不再包含任何候选时返回 {@literal null}
+     */
+    private static Node copyRemove(Node node, String key, int index, int id) {
+        if (node == null) {
+            return null;
+        }
+
+        Node copy = node.copy();
+        if (index == key.length()) {
+            copy.own = remove(copy.own, id);
+        } else {
+            char c = Character.toLowerCase(key.charAt(index));
+            Node child = node.getNode(c);
+            if (child == null) {
+                return node;
+            }
+
+            Node removed = copyRemove(child, key, index + 1, id);
+            if (removed == null) {
+                copy.removeNode(c);
+            } else {
+                copy.putNode(c, removed);
+            }
+        }
+
+        copy.refresh();
+        return index != 0 && copy.own.length == 0 && copy.keys.length == 0 ? null : copy;
+    }
+
+    private static long[] remove(long[] scores, int id) {
+        long[] removed = new long[scores.length];
+        int size = 0;
+        for (long score : scores) {
+            if ((int) score != id) {
+                removed[size++] = score;
+            }
+        }
+
+        return Arrays.copyOf(removed, size);
+    }
+
+    /**
+     * 计算排名分数, 分数越小排名越高, 低 32 位为 emoji 编号
+     */
+    private static long score(boolean tag, String key, int id) {
+        return (tag ? TAG_FLAG : 0) | ((long) key.length() << 32) | id;
+    }
+
+    /**
+     * 合并两个按分数升序排列的候选列表, 同一个 emoji 只保留分数最小的一个
+     */
+    private static long[] merge(long[] a, long[] b, int limit) {
+        long[] merged = new long[Math.min(a.length + b.length, limit)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+
+        while (size < merged.length && (i < a.length || j < b.length)) {
+            long next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (!contains(merged, size, (int) next)) {
+                merged[size++] = next;
+            }
+        }
+
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static boolean contains(long[] scores, int size, int id) {
+        for (int i = 0; i < size; i++) {
+            if ((int) scores[i] == id) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", PrefixIndex.class.getSimpleName() + "[", "]")
+            .add("size=" + table.size())
+            .toString();
+    }
+
+    /**
+     * 一次模糊查找的状态<br>
+     *
+     * 编辑距离矩阵中与对角线距离超过最大编辑距离的单元格不可能小于最大编辑距离,
+     * 因此每行只计算对角线附近 {@code 2 * maxDistance + 1} 个单元格
+     */
+    private static class Fuzzy {
+        /** 小写的别名 */
+        private final char[] alias;
+        private final int columns;
+        private final int band;
+        /** 超出最大编辑距离的值 */
+        private final int infinity;
+        /** 编辑距离矩阵, 第 n 行对应字典树第 n 层 */
+        private final int[] rows;
+        private final long[] members;
+        private int radius;
+        private long best = -1;
+        private int bestDistance;
+
+        Fuzzy(CharSequence alias, int maxDistance, int depth, long[] members) {
+            this.alias = new char[alias.length()];
+            this.columns = alias.length() + 1;
+            this.band = maxDistance;
+            this.infinity = maxDistance + 1;
+            this.rows = new int[(depth + 1) * this.columns];
+            this.members = members;
+            this.radius = maxDistance;
+
+            for (int j = 0; j < this.alias.length; j++) {
+                this.alias[j] = Character.toLowerCase(alias.charAt(j));
+            }
+            for (int j = 0; j < this.columns; j++) {
+                this.rows[j] = Math.min(j, this.infinity);
+            }
+        }
+
+        void visit(char c, Node node, int depth) {
+            int previous = (depth - 1) * this.columns;
+            int current = depth * this.columns;
+            int lo = Math.max(1, depth - this.band);
+            int hi = Math.min(this.columns - 1, depth + this.band);
+            if (lo > hi) {
+                return;
+            }
+
+            int min = this.rows[current + lo - 1] = lo == 1 ? Math.min(depth, this.infinity) : this.infinity;
+            for (int j = lo; j <= hi; j++) {
+                int cost = c == this.alias[j - 1] ? 0 : 1;
+                int value = Math.min(
+                    Math.min(this.rows[current + j - 1], this.rows[previous + j]) + 1,
+                    this.rows[previous + j - 1] + cost);
+
+                this.rows[current + j] = value;
+                min = Math.min(min, value);
+            }
+
+            if (hi + 1 < this.columns) {
+                this.rows[current + hi + 1] = this.infinity;
+            }
+
+            int distance = hi == this.columns - 1 ? this.rows[current + hi] : this.infinity;
+            long score = distance <= this.radius ? firstAlias(node.own) : -1;
+            if (score != -1) {
+                if (this.best == -1 || distance < this.bestDistance
+                    || (distance == this.bestDistance && score < this.best)) {
+                    this.best = score;
+                    this.bestDistance = distance;
+                    // 之后只需查找距离不大于当前结果的别名
+                    this.radius = distance;
+                }
+            }
+
+            if (min > this.radius) {
+                return;
+            }
+
+            for (int i = 0; i < node.children.length; i++) {
+                Node child = node.children[i];
+                if (child.aliased) {
+                    visit(node.keys[i], child, depth + 1);
+                }
+            }
+        }
+
+        /**
+         * @return 排名最高的可见别名, 不存在返回 {@code -1}
+         */
+        private long firstAlias(long[] own) {
+            for (long score : own) {
+                if ((score & TAG_FLAG) != 0) {
+                    break;
+                }
+                if (TrieTree.isMember(this.members, (int) score)) {
+                    return score;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * 字典树节点
+     */
+    private static class Node {
+        private static final char[] EMPTY_KEYS = new char[0];
+        private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+        private char[] keys = EMPTY_KEYS;
+        private Node[] children = EMPTY_CHILDREN;
+        /** 以该节点结尾的别名或标签 */
+        private long[] own = EMPTY;
+        /** 该节点及所有子节点中排名最高的候选 */
+        private long[] top = EMPTY;
+        /** 该节点及所有子节点中是否存在别名 */
+        private boolean aliased;
+
+        /**
+         * @return 共享子节点与候选的副本
+         */
+        public Node copy() {
+            Node copy = new Node();
+            copy.keys = this.keys;
+            copy.children = this.children;
+            copy.own = this.own;
+            copy.top = this.top;
+            copy.aliased = this.aliased;
+            return copy;
+        }
+
+        /**
+         * 插入或替换子节点. 子节点数组可能与其他节点共享, 因此总是创建新数组
+         */
+        public void putNode(char c, Node node) {
+            int index = Arrays.binarySearch(this.keys, c);
+            if (index < 0) {
+                insertNode(c, node);
+                return;
+            }
+
+            this.children = this.children.clone();
+            this.children[index] = node;
+        }
+
+        public void removeNode(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            int length = this.keys.length;
+            char[] keys = new char[length - 1];
+            Node[] children = new Node[length - 1];
+
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.keys, index + 1, keys, index, length - index - 1);
+            System.arraycopy(this.children, index + 1, children, index, length - index - 1);
+
+            this.keys = keys;
+            this.children = children;
+        }
+
+        public void insertNode(char c, Node node) {
+            int index = -(Arrays.binarySearch(this.keys, c) + 1);
+            int length = this.keys.length;
+            char[] keys = new char[length + 1];
+            Node[] children = new Node[length + 1];
+
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            keys[index] = c;
+            children[index] = node;
+            System.arraycopy(this.keys, index, keys, index + 1, length - index);
+            System.arraycopy(this.children, index, children, index + 1, length - index);
+
+            this.keys = keys;
+            this.children = children;
+        }
+
+        public Node getNode(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            return index < 0 ? null : this.children[index];
+        }
+
+        /**
+         * 自底向上计算每个节点的候选
+         */
+        public void collect() {
+            for (Node child : this.children) {
+                child.collect();
+            }
+
+            refresh();
+        }
+
+        /**
+         * 根据自身与子节点的候选重新计算该节点的候选
+         */
+        public void refresh() {
+            long[] top = Arrays.copyOf(this.own, Math.min(this.own.length, MAX_CACHED));
+            boolean aliased = this.own.length != 0 && (this.own[0] & TAG_FLAG) == 0;
+            for (Node child : this.children) {
+                top = merge(top, child.top, MAX_CACHED);
+                aliased |= child.aliased;
+            }
+
+            this.top = top;
+            this.aliased = aliased;
+        }
+
+    }
+
+    /**
+     * {@link #rank(Node, int)} 优先队列中的元素, 为一个尚未展开的节点或一个节点自身候选的读取位置
+     */
+    private static class Cursor implements Comparable<Cursor> {
+        /** 为 {@literal null} 时表示 {@link #scores} 的读取位置 */
+        private final Node node;
+        private final long[] scores;
+        private int index;
+        /** 节点子树中的最小分数, 或当前读取位置的分数 */
+        private long key;
+
+        Cursor(Node node) {
+            this.node = node;
+            this.scores = null;
+            this.key = node.top[0];
+        }
+
+        Cursor(long[] scores) {
+            this.node = null;
+            this.scores = scores;
+            this.key = scores[0];
+        }
+
+        static void offer(PriorityQueue<Cursor> queue, Node node) {
+            if (node.top.length != 0) {
+                queue.add(new Cursor(node));
+            }
+        }
+
+        /**
+         * @return 存在下一个候选返回 {@code true}
+         */
+        boolean advance() {
+            if (++this.index == this.scores.length) {
+                return false;
+            }
+
+            this.key = this.scores[this.index];
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            return Long.compare(this.key, o.key);
+        }
+    }
+}
@@ -77,19 +77,75 @@ public abstract class StringUtils {
     }
 
     /**
-     * 根据代码点计算字符索引
+     * 获取给定字符在 HTML 中的转义字符串
      *
-     * @param codePoints 代码点数组
-     * @param from 初始索引
-     * @param to 最终索引
-     * @return 计算出的索引
+     * @param c 字符
+     * @return 不需要转义返回 {@literal null}
      */
-    public static int computeIndex(int[] codePoints, int from, int to) {
-        int index = 0;
-        for (int i = from; i < to; i++) {
-            index += Character.isSupplementaryCodePoint(codePoints[i]) ? 2 : 1;
+    public static String escapeHtml(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&#39;";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 转义 HTML 特殊字符
+     *
+     * @param s 字符串, 不能为 {@literal null}
+     * @return 转义后的字符串
+     */
+    public static String escapeHtml(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            String escaped = escapeHtml(s.charAt(i));
+            if (escaped == null) {
+                sb.append(s.charAt(i));
+            } else {
+                sb.append(escaped);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 将给定范围内的每个代码点以小写十六进制形式追加到 {@code sb} 中, 使用 {@code -} 分隔
+     *
+     * <pre>
+     * 👋🏻 -> 1f44b-1f3fb
+     * </pre>
+     *
+     * @param sb 输出
+     * @param s 字符序列
+     * @param start 起始字符索引
+     * @param end 结束字符索引(不包含)
+     * @return {@code sb}
+     */
+    public static StringBuilder appendHexCodePoints(StringBuilder sb, CharSequence s, int start, int end) {
+        for (int i = start; i < end;) {
+            int cp = Character.codePointAt(s, i);
+            if (i != start) {
+                sb.append('-');
+            }
+
+            int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(cp) + 3) >> 2);
+            for (int shift = (digits - 1) << 2; shift >= 0; shift -= 4) {
+                sb.append(Character.forDigit((cp >>> shift) & 0xf, 16));
+            }
+            i += Character.charCount(cp);
         }
 
-        return index;
+        return sb;
     }
 }
@@ -19,125 +19,493 @@ package com.github.mesharel.emoji.internal;
 import com.github.mesharel.emoji.Emoji;
 import com.github.mesharel.emoji.SkinTone;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 import java.util.StringJoiner;
 
+/**
+ * emoji 字典树<br>
+ *
+ * 创建完成后不会再修改. {@link #register(Emoji, EmojiTable)} 与 {@link #unregister(Emoji)}
+ * 只复制从根节点到目标节点路径上的节点, 返回共享其余节点的新字典树<br>
+ *
+ * {@link #view(long[])} 创建只包含部分 emoji 的视图, 视图与原字典树共享所有节点,
+ * 只使用编号位图判断 emoji 是否可见
+ */
 public class TrieTree {
+    /** {@link #match(CharSequence, int, int)} 未匹配到 emoji 时的返回值 */
+    public static final long NO_MATCH = -1L;
+
     private final Node root;
+    /** emoji 编号 -> emoji, 编号为 emoji 插入字典树的顺序 */
+    private final EmojiTable table;
+    /**
+     * 可以作为 emoji 首个 UTF-16 代码单元的字符位图<br>
+     *
+     * 以下两个位图创建后不会修改. 注册的 emoji 包含新字符时复制位图, 否则与原字典树共享.
+     * 移除 emoji 时不清除对应的位, 多出的位只会让检查变得保守, 不会影响匹配结果
+     */
+    private final long[] leading;
+    /** emoji 及肤色中出现过的所有 UTF-16 代码单元的位图 */
+    private final long[] alphabet;
+    /** 可见的 emoji 编号位图, 为 {@literal null} 时所有 emoji 可见 */
+    private final long[] members;
 
     public TrieTree(Collection<Emoji> emojis) {
         this.root = new Node();
-        emojis.forEach(this::insertNode);
+        this.table = new EmojiTable(emojis);
+        this.leading = new long[1 << 10];
+        this.alphabet = new long[1 << 10];
+        this.members = null;
+
+        for (SkinTone tone : SkinTone.values()) {
+            mark(this.alphabet, tone.getUnicode());
+        }
+
+        int id = 0;
+        for (Emoji emoji : emojis) {
+            insertNode(emoji, id++);
+        }
+    }
+
+    private TrieTree(Node root, EmojiTable table, long[] leading, long[] alphabet, long[] members) {
+        this.root = root;
+        this.table = table;
+        this.leading = leading;
+        this.alphabet = alphabet;
+        this.members = members;
+    }
+
+    /**
+     * 创建只包含给定编号的 emoji 的视图, 该实例不会改变<br>
+     *
+     * 匹配时跳过不可见的 emoji, 返回最长的可见 emoji
+     *
+     * @param members 可见的 emoji 编号位图, 创建后不能修改
+     * @return 与该实例共享节点的字典树
+     */
+    public TrieTree view(long[] members) {
+        return new TrieTree(this.root, this.table, this.leading, this.alphabet, members);
     }
 
     /**
-     * 在给定的代码点中尝试匹配 emoji
+     * @param id emoji 编号
+     * @return 给定编号的 emoji 在该字典树中是否可见, 不检查 emoji 是否已经移除
+     */
+    public boolean isMember(int id) {
+        return isMember(this.members, id);
+    }
+
+    static boolean isMember(long[] members, int id) {
+        return members == null || ((id >>> 6) < members.length && (members[id >>> 6] & (1L << id)) != 0);
+    }
+
+    /**
+     * 创建包含给定 emoji 的字典树, 该实例不会改变<br>
+     *
+     * {@code table} 必须由 {@link #getTable()} 追加该 emoji 得到, 新 emoji 的编号为 {@code table} 的最后一个编号.
+     * 已存在相同 unicode 编码的 emoji 时, 新 emoji 替换原 emoji
      *
-     * @param codePoints 代码点数组
-     * @param start 初始索引
-     * @return 匹配到的最终索引
+     * @param emoji emoji
+     * @param table 追加 emoji 后的编号映射
+     * @return 新的字典树
      */
-    public int tryMatch(int[] codePoints, int start) {
-        int end = -1;
+    public TrieTree register(Emoji emoji, EmojiTable table) {
+        if (emoji == null || !StringUtils.hasText(emoji.getEmoji())) {
+            return new TrieTree(this.root, table, this.leading, this.alphabet, withMember(this.members, table.size() - 1));
+        }
+
+        String unicode = emoji.getEmoji();
+        Node root = copyInsert(this.root, unicode.codePoints().toArray(), 0, table.size() - 1);
+        return new TrieTree(root, table, copyMark(this.leading, unicode.substring(0, 1)),
+            copyMark(this.alphabet, unicode), withMember(this.members, table.size() - 1));
+    }
+
+    /**
+     * 创建不包含给定 emoji 的字典树, 该实例不会改变. emoji 编号不会被重新使用
+     *
+     * @param emoji emoji
+     * @return 新的字典树, emoji 不存在时返回该实例
+     */
+    public TrieTree unregister(Emoji emoji) {
+        if (emoji == null || !StringUtils.hasText(emoji.getEmoji()) || indexOf(emoji.getEmoji()) == -1) {
+            return this;
+        }
+
+        Node root = copyRemove(this.root, emoji.getEmoji().codePoints().toArray(), 0);
+        return new TrieTree(root, this.table, this.leading, this.alphabet, this.members);
+    }
+
+    /**
+     * 从 {@code start} 处开始, 在给定的字符序列中匹配最长的 emoji<br>
+     *
+     * 可以修改肤色的 emoji 之后的一个肤色会被视为该 emoji 的一部分, ZWJ 组合中的每个组成部分各自可以跟随一个肤色.
+     * 连续的多个肤色或跟随在不能修改肤色的 emoji 之后的肤色不属于任何 emoji. 该方法不会创建任何对象
+     *
+     * @param s 字符序列
+     * @param start 初始字符索引
+     * @param limit 匹配的字符索引上限(不包含)
+     * @return 未匹配到 emoji 返回 {@link #NO_MATCH}, 否则返回由 emoji 编号与结束字符索引组成的值,
+     * 使用 {@link #id(long)} 与 {@link #end(long)} 获取
+     */
+    public long match(CharSequence s, int start, int limit) {
+        if (!mayStart(s.charAt(start))) {
+            return NO_MATCH;
+        }
+
+        long matched = NO_MATCH;
         Node node = this.root;
+        // 上一个代码点, 为肤色时为 -1
+        int previous = -1;
+
+        for (int i = start; i < limit;) {
+            char c = s.charAt(i);
+            int cp = c;
+            int next = i + 1;
+
+            if (Character.isHighSurrogate(c) && next < limit && Character.isLowSurrogate(s.charAt(next))) {
+                cp = Character.toCodePoint(c, s.charAt(next));
+                next++;
+            }
 
-        for (int i = start; i < codePoints.length; i++) {
-            int cp = codePoints[i];
             if (SkinTone.isSkinTone(cp)) {
-                end = i;
+                if (previous == -1 || !isSkinnable(previous)) {
+                    break;
+                }
+
+                if (node.id != -1 && isMember(this.members, node.id)) {
+                    matched = pack(node.id, next);
+                }
+                previous = -1;
+                i = next;
                 continue;
             }
 
-            if (node.hasNode(cp)) {
-                node = node.getNode(cp);
-                end = i;
-                continue;
+            node = node.getNode(cp);
+            if (node == null) {
+                break;
             }
+            previous = cp;
 
-            return end;
+            if (node.id != -1 && isMember(this.members, node.id)) {
+                matched = pack(node.id, next);
+            }
+            i = next;
         }
 
-        return end;
+        return matched;
+    }
+
+    /**
+     * @param cp 代码点
+     * @return 该代码点单独组成的 emoji 可以修改肤色时返回 {@code true}
+     */
+    private boolean isSkinnable(int cp) {
+        Node node = this.root.getNode(cp);
+        if (node == null || node.id == -1) {
+            return false;
+        }
+
+        Emoji emoji = this.table.get(node.id);
+        return emoji != null && emoji.isSkinnable();
+    }
+
+    /**
+     * 检查给定字符是否可能是一个 emoji 的首个 UTF-16 代码单元
+     *
+     * @param c 字符
+     * @return 可能是 emoji 的起始字符返回 {@code true}
+     */
+    public boolean mayStart(char c) {
+        return (this.leading[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * 检查在给定索引处切分字符序列是否安全, 即不存在跨越该索引的 emoji<br>
+     *
+     * 当索引前的字符不可能出现在任何 emoji 中时, 切分是安全的,
+     * 从该索引开始匹配与从序列开头匹配得到的结果相同
+     *
+     * @param s 字符序列
+     * @param index 切分的字符索引
+     * @return 可以安全切分返回 {@code true}
+     */
+    public boolean isBoundary(CharSequence s, int index) {
+        if (index <= 0 || index >= s.length()) {
+            return true;
+        }
+
+        return !mayContain(s.charAt(index - 1));
+    }
+
+    /**
+     * 检查给定字符是否可能出现在某个 emoji 中. 高代理字符总是返回 {@code true}, 避免拆分代理对
+     *
+     * @param c 字符
+     * @return 可能出现在 emoji 中返回 {@code true}
+     */
+    public boolean mayContain(char c) {
+        return Character.isHighSurrogate(c) || (this.alphabet[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * 查找与给定字符串完全相同的 emoji 编号
+     *
+     * @param emoji emoji 字符串, 不包含肤色
+     * @return emoji 编号, 不存在返回 {@code -1}
+     */
+    public int indexOf(String emoji) {
+        Node node = this.root;
+        for (int i = 0; i < emoji.length() && node != null;) {
+            int cp = emoji.codePointAt(i);
+            node = node.getNode(cp);
+            i += Character.charCount(cp);
+        }
+
+        return node == null || node == this.root || !isMember(this.members, node.id) ? -1 : node.id;
+    }
+
+    /**
+     * 获取给定编号的 emoji
+     *
+     * @param id emoji 编号
+     * @return emoji
+     */
+    public Emoji getEmoji(int id) {
+        return this.table.get(id);
+    }
+
+    /**
+     * @return emoji 编号的数量, 包括已经移除的编号
+     */
+    public int size() {
+        return this.table.size();
+    }
+
+    public EmojiTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return 字典树中的所有 emoji, 按编号排列, 不可修改
+     */
+    public List<Emoji> getEmojis() {
+        List<Emoji> emojis = new ArrayList<>(this.table.size());
+        for (int id = 0; id < this.table.size(); id++) {
+            Emoji emoji = this.table.get(id);
+            if (emoji != null && StringUtils.hasText(emoji.getEmoji()) && indexOf(emoji.getEmoji()) == id) {
+                emojis.add(emoji);
+            }
+        }
+
+        return Collections.unmodifiableList(emojis);
+    }
+
+    /**
+     * @param matched {@link #match(CharSequence, int, int)} 的返回值
+     * @return 匹配到的 emoji 编号
+     */
+    public static int id(long matched) {
+        return (int) (matched >>> 32);
+    }
+
+    /**
+     * @param matched {@link #match(CharSequence, int, int)} 的返回值
+     * @return 匹配到的 emoji 的结束字符索引(不包含)
+     */
+    public static int end(long matched) {
+        return (int) matched;
+    }
+
+    private static long pack(int id, int end) {
+        return ((long) id << 32) | (end & 0xffffffffL);
     }
 
     /**
      * 向字典树中插入给定 emoji
      *
      * @param emoji emoji
+     * @param id emoji 编号
      */
-    private void insertNode(Emoji emoji) {
+    private void insertNode(Emoji emoji, int id) {
         if (emoji == null || !StringUtils.hasText(emoji.getEmoji())) {
             return;
         }
 
+        String unicode = emoji.getEmoji();
+        char first = unicode.charAt(0);
+        this.leading[first >>> 6] |= 1L << first;
+        mark(this.alphabet, unicode);
+
         Node trie = this.root;
-        int[] cps = emoji.getEmoji().codePoints().toArray();
+        int[] cps = unicode.codePoints().toArray();
         for (int cp : cps) {
-            if (!trie.hasNode(cp)) {
-                Node child = new Node();
+            Node child = trie.getNode(cp);
+            if (child == null) {
+                child = new Node();
                 trie.insertNode(cp, child);
-                trie = child;
+            }
+
+            trie = child;
+        }
+
+        trie.id = id;
+    }
+
+    /**
+     * @return 在视图中加入给定编号后的位图
+     */
+    static long[] withMember(long[] members, int id) {
+        if (members == null) {
+            return null;
+        }
+
+        long[] copy = Arrays.copyOf(members, Math.max(members.length, (id >>> 6) + 1));
+        copy[id >>> 6] |= 1L << id;
+        return copy;
+    }
+
+    private static Node copyInsert(Node node, int[] cps, int depth, int id) {
+        Node copy = node == null ? new Node() : node.copy();
+        if (depth == cps.length) {
+            copy.id = id;
+            return copy;
+        }
+
+        Node child = node == null ? null : node.getNode(cps[depth]);
+        copy.insertNode(cps[depth], copyInsert(child, cps, depth + 1, id));
+        return copy;
+    }
+
+    /**
+     * @return 复制后的节点, 节点不再包含任何 emoji 时返回 {@literal null}
+     */
+    private static Node copyRemove(Node node, int[] cps, int depth) {
+        Node copy = node.copy();
+        if (depth == cps.length) {
+            copy.id = -1;
+        } else {
+            Node child = copyRemove(node.getNode(cps[depth]), cps, depth + 1);
+            if (child == null) {
+                copy.removeNode(cps[depth]);
             } else {
-                trie = trie.getNode(cp);
+                copy.insertNode(cps[depth], child);
             }
         }
 
-        trie.setEmoji(emoji);
+        return depth != 0 && copy.id == -1 && copy.keys.length == 0 ? null : copy;
+    }
+
+    /**
+     * @return 包含给定字符的位图, 所有字符已经存在时返回原位图
+     */
+    private static long[] copyMark(long[] bitmap, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((bitmap[c >>> 6] & (1L << c)) == 0) {
+                long[] copy = bitmap.clone();
+                mark(copy, s);
+                return copy;
+            }
+        }
+
+        return bitmap;
+    }
+
+    private static void mark(long[] bitmap, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            bitmap[c >>> 6] |= 1L << c;
+        }
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", TrieTree.class.getSimpleName() + "[", "]")
             .add("root=" + root)
+            .add("size=" + table.size())
             .toString();
     }
 
     /**
-     * 字典树节点
+     * 字典树节点<br>
+     *
+     * 子节点使用按代码点排序的数组保存, 查找时使用二分查找, 避免装箱
      */
     private static class Node {
-        private Emoji emoji;
-        private Map<Integer, Node> children;
+        private static final int[] EMPTY_KEYS = new int[0];
+        private static final Node[] EMPTY_CHILDREN = new Node[0];
 
-        public Emoji getEmoji() {
-            return emoji;
-        }
+        private int id = -1;
+        private int[] keys = EMPTY_KEYS;
+        private Node[] children = EMPTY_CHILDREN;
 
-        public void setEmoji(Emoji emoji) {
-            this.emoji = emoji;
+        /**
+         * @return 共享子节点的副本
+         */
+        public Node copy() {
+            Node copy = new Node();
+            copy.id = this.id;
+            copy.keys = this.keys;
+            copy.children = this.children;
+            return copy;
         }
 
+        /**
+         * 插入或替换子节点. 子节点数组可能与其他节点共享, 因此总是创建新数组
+         */
         public void insertNode(int codePoint, Node node) {
-            if (this.children == null) {
-                this.children = new HashMap<>();
+            int index = Arrays.binarySearch(this.keys, codePoint);
+            if (index >= 0) {
+                this.children = this.children.clone();
+                this.children[index] = node;
+                return;
             }
 
-            this.children.put(codePoint, node);
+            index = -(index + 1);
+            int length = this.keys.length;
+            int[] keys = new int[length + 1];
+            Node[] children = new Node[length + 1];
+
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            keys[index] = codePoint;
+            children[index] = node;
+            System.arraycopy(this.keys, index, keys, index + 1, length - index);
+            System.arraycopy(this.children, index, children, index + 1, length - index);
+
+            this.keys = keys;
+            this.children = children;
         }
 
-        public boolean hasNode(int codePoint) {
-            if (this.children == null) {
-                return false;
-            }
+        public void removeNode(int codePoint) {
+            int index = Arrays.binarySearch(this.keys, codePoint);
+            int length = this.keys.length;
+            int[] keys = new int[length - 1];
+            Node[] children = new Node[length - 1];
+
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.keys, index + 1, keys, index, length - index - 1);
+            System.arraycopy(this.children, index + 1, children, index, length - index - 1);
 
-            return this.children.containsKey(codePoint);
+            this.keys = keys;
+            this.children = children;
         }
 
         public Node getNode(int codePoint) {
-            if (this.children == null) {
-                return null;
-            }
-
-            return this.children.get(codePoint);
+            int index = Arrays.binarySearch(this.keys, codePoint);
+            return index < 0 ? null : this.children[index];
         }
 
         @Override
         public String toString() {
             return new StringJoiner(", ", Node.class.getSimpleName() + "[", "]")
-                .add("emoji=" + emoji)
-                .add("children=" + children)
+                .add("id=" + id)
+                .add("keys=" + Arrays.toString(keys))
                 .toString();
         }
     }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 MengYao Lu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.mesharel.emoji;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 从分块到达的文本流中提取 emoji 的 {@link Flow.Processor}<br>
+ *
+ * 规则与 {@link StreamingEmojiExtractor} 相同, 跨越分块边界的 emoji 会被完整输出,
+ * emoji 的位置为在整个文本流中的位置<br>
+ *
+ * 只有下游请求的 emoji 全部发送完毕且仍有未满足的请求时, 才会向上游请求下一个分块,
+ * 因此缓存的 emoji 不超过一个分块中的数量. 只支持一个订阅者<br>
+ *
+ * 该类只在 Java 9 及以上版本中可用
+ */
+public class EmojiFlowProcessor implements Flow.Processor<CharSequence, ExtractedEmoji> {
+    private final StreamingEmojiExtractor extractor;
+    private final Queue<ExtractedEmoji> queue = new ConcurrentLinkedQueue<>();
+    /** 下游尚未满足的请求数量 */
+    private final AtomicLong requested = new AtomicLong();
+    /** 用于串行化 {@link #drain()} */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super ExtractedEmoji> downstream;
+    /** 是否已向上游请求分块且尚未收到 */
+    private volatile boolean awaiting;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    /** 下游无效请求产生的错误, 优先于上游的结束信号发送 */
+    private final AtomicReference<Throwable> rejected = new AtomicReference<>();
+    private Throwable error;
+    private boolean terminated;
+
+    /**
+     * @param processor 处理器, 不能为 {@literal null}. 使用创建时的索引
+     */
+    public EmojiFlowProcessor(EmojiProcessor processor) {
+        Objects.requireNonNull(processor, "processor must not be null");
+        this.extractor = processor.streamingExtractor();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ExtractedEmoji> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber must not be null");
+
+        synchronized (this) {
+            if (this.downstream != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {}
+
+                    @Override
+                    public void cancel() {}
+                });
+                subscriber.onError(new IllegalStateException("processor supports only one subscriber"));
+                return;
+            }
+            this.downstream = subscriber;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    // 即使上游已经结束也要发送错误, 先取消上游, 再向下游发送错误
+                    rejected.compareAndSet(null, new IllegalArgumentException("request must be positive"));
+                    Flow.Subscription subscription = upstream;
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                    drain();
+                    return;
+                }
+
+                requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription must not be null");
+        if (this.upstream != null) {
+            subscription.cancel();
+            return;
+        }
+
+        this.upstream = subscription;
+        if (this.rejected.get() != null) {
+            // 下游在上游订阅之前发送了无效的请求
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(CharSequence item) {
+        Objects.requireNonNull(item, "item must not be null");
+        if (this.done) {
+            return;
+        }
+
+        this.extractor.feed(item, this.queue::offer);
+        this.awaiting = false;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable must not be null");
+        if (this.done) {
+            return;
+        }
+
+        this.error = throwable;
+        this.done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.done) {
+            return;
+        }
+
+        this.extractor.finish(this.queue::offer);
+        this.done = true;
+        drain();
+    }
+
+    /**
+     * 按下游的请求发送 emoji, 并在需要时向上游请求分块. 同一时间只有一个线程执行发送,
+     * 其他线程的调用只会使其再执行一轮
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super ExtractedEmoji> subscriber = this.downstream;
+            if (subscriber != null && !this.terminated) {
+                if (this.cancelled) {
+                    this.terminated = true;
+                    this.queue.clear();
+                    Flow.Subscription subscription = this.upstream;
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                } else {
+                    emit(subscriber);
+                }
+            }
+
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super ExtractedEmoji> subscriber) {
+        Throwable rejected = this.rejected.get();
+        if (rejected != null) {
+            this.terminated = true;
+            this.queue.clear();
+            subscriber.onError(rejected);
+            return;
+        }
+
+        boolean done = this.done;
+        if (done && this.error != null) {
+            this.terminated = true;
+            this.queue.clear();
+            subscriber.onError(this.error);
+            return;
+        }
+
+        long sent = 0;
+        long requested = this.requested.get();
+        ExtractedEmoji emoji;
+        while (sent < requested && !this.cancelled && (emoji = this.queue.poll()) != null) {
+            subscriber.onNext(emoji);
+            sent++;
+        }
+        if (sent != 0 && requested != Long.MAX_VALUE) {
+            this.requested.addAndGet(-sent);
+        }
+
+        if (!this.queue.isEmpty() || this.cancelled) {
+            return;
+        }
+        if (done) {
+            this.terminated = true;
+            subscriber.onComplete();
+            return;
+        }
+
+        Flow.Subscription subscription = this.upstream;
+        if (subscription != null && !this.awaiting && this.requested.get() > 0) {
+            // 可能在当前线程中同步调用 onNext, 此时 drain 会再执行一轮
+            this.awaiting = true;
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EmojiFlowProcessor.class.getSimpleName() + "[", "]")
+            .add("extractor=" + extractor)
+            .add("queued=" + queue.size())
+            .add("requested=" + requested.get())
+            .add("done=" + done)
+            .toString();
+    }
+}
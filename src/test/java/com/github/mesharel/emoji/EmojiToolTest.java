@@ -16,6 +16,7 @@
 
 package com.github.mesharel.emoji;
 
+import com.github.mesharel.emoji.internal.ClockCache;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -25,13 +26,29 @@ import javax.json.bind.JsonbBuilder;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 public class EmojiToolTest {
+    private static List<Emoji> EMOJIS;
     private static EmojiProcessor EMOJI_PROCESSOR;
 
     @BeforeAll
@@ -49,12 +66,15 @@ public class EmojiToolTest {
                 (String) map.get("emoji"),
                 (List<String>) map.get("aliases"),
                 (List<String>) map.get("tags"),
-                (Boolean) map.getOrDefault("skin_tones", false)
+                (Boolean) map.getOrDefault("skin_tones", false),
+                (String) map.get("category"),
+                (String) map.get("unicode_version")
             );
 
             emojis.add(emoji);
         }
 
+        EMOJIS = emojis;
         EMOJI_PROCESSOR = new EmojiProcessor(emojis);
     }
 
@@ -189,4 +209,768 @@ public class EmojiToolTest {
             EMOJI_PROCESSOR.replaceByAlias(":grinning: :smiley_cat: :grinning:")
         );
     }
+
+    @Test
+    public void countEmojiHistogram() {
+        String text = "\uD83D\uDC4B, \uD83D\uDC4B\uD83C\uDFFB \uD83D\uDE00 and \uD83D\uDC4B\uD83C\uDFFB";
+        Emoji wave = EMOJI_PROCESSOR.findByAlias("wave").orElseThrow();
+        Emoji grinning = EMOJI_PROCESSOR.findByAlias("grinning").orElseThrow();
+
+        EmojiHistogram histogram = EMOJI_PROCESSOR.createHistogram(false);
+        Assertions.assertEquals(4, EMOJI_PROCESSOR.countEmojis(text, histogram));
+        Assertions.assertEquals(3, histogram.getCount(wave));
+        Assertions.assertEquals(1, histogram.getCount(wave, null));
+        Assertions.assertEquals(2, histogram.getCount(wave, SkinTone.LIGHT));
+        Assertions.assertEquals(1, histogram.getCount(grinning));
+
+        EmojiHistogram folded = EMOJI_PROCESSOR.createHistogram(true);
+        EMOJI_PROCESSOR.countEmojis(text, folded);
+        EMOJI_PROCESSOR.countEmojis("\uD83D\uDE00", folded.merge(EMOJI_PROCESSOR.createHistogram(true)));
+        Assertions.assertEquals(5, folded.getTotal());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> folded.merge(histogram));
+
+        List<Map.Entry<Emoji, Long>> top = folded.topK(1);
+        Assertions.assertEquals(1, top.size());
+        Assertions.assertEquals(wave, top.get(0).getKey());
+        Assertions.assertEquals(3L, top.get(0).getValue());
+        Assertions.assertEquals(List.of(wave, grinning),
+            folded.topK(10).stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void suggestByPrefix() {
+        Assertions.assertEquals(
+            List.of("\uD83D\uDE04", "\uD83D\uDE0F", "\uD83D\uDE03"),
+            EMOJI_PROCESSOR.suggest(":smi", 3).stream().map(Emoji::getEmoji).collect(Collectors.toList()));
+
+        // alias before tag: "smile" is the alias of 😄 and a tag of 😀
+        List<Emoji> smile = EMOJI_PROCESSOR.suggest("SMILE", 100);
+        Assertions.assertEquals("\uD83D\uDE04", smile.get(0).getEmoji());
+        Assertions.assertTrue(smile.stream().anyMatch(emoji -> emoji.getEmoji().equals("\uD83D\uDE00")));
+        Assertions.assertEquals(smile.size(), smile.stream().distinct().count());
+        // beyond the cached candidates the subtree is walked in rank order
+        List<Emoji> all = EMOJI_PROCESSOR.suggest("s", 1000);
+        Assertions.assertTrue(all.size() > 16);
+        Assertions.assertEquals(all.subList(0, 16), EMOJI_PROCESSOR.suggest("s", 16));
+        Assertions.assertEquals(all.subList(0, 17), EMOJI_PROCESSOR.suggest("s", 17));
+        Assertions.assertEquals(rankByPrefix(EMOJIS, "s"), all);
+        Assertions.assertEquals(rankByPrefix(EMOJIS, "sm"), EMOJI_PROCESSOR.suggest("sm", 1000));
+
+        Assertions.assertTrue(EMOJI_PROCESSOR.suggest(":", 5).isEmpty());
+        Assertions.assertTrue(EMOJI_PROCESSOR.suggest("smi", 0).isEmpty());
+        Assertions.assertTrue(EMOJI_PROCESSOR.suggest(UUID.randomUUID().toString(), 5).isEmpty());
+    }
+
+    /**
+     * Reference ranking: aliases before tags, then shorter keys, then list order.
+     */
+    private static List<Emoji> rankByPrefix(List<Emoji> emojis, String prefix) {
+        List<Long> scores = new ArrayList<>();
+        for (int id = 0; id < emojis.size(); id++) {
+            long best = Long.MAX_VALUE;
+            for (int tag = 0; tag < 2; tag++) {
+                for (String key : tag == 0 ? emojis.get(id).getAliases() : emojis.get(id).getTags()) {
+                    if (key.toLowerCase().startsWith(prefix)) {
+                        best = Math.min(best, ((long) tag << 62) | ((long) key.length() << 32) | id);
+                    }
+                }
+            }
+            if (best != Long.MAX_VALUE) {
+                scores.add(best);
+            }
+        }
+
+        return scores.stream().sorted().map(score -> emojis.get((int) (long) score)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void findEmojiByAliasFuzzy() {
+        Assertions.assertEquals(
+            "\uD83D\uDE00",
+            EMOJI_PROCESSOR.findByAliasFuzzy("grining", 1).map(Emoji::getEmoji).orElseThrow());
+        Assertions.assertEquals(
+            "\uD83D\uDC4B",
+            EMOJI_PROCESSOR.findByAliasFuzzy("wave", 2).map(Emoji::getEmoji).orElseThrow());
+        Assertions.assertFalse(EMOJI_PROCESSOR.findByAliasFuzzy("grining", 0).isPresent());
+        Assertions.assertFalse(EMOJI_PROCESSOR.findByAliasFuzzy("grnng", 1).isPresent());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EMOJI_PROCESSOR.findByAliasFuzzy("wave", -1));
+
+        Assertions.assertEquals(
+            "\uD83D\uDE00 and \uD83D\uDE3A at 12:30:45",
+            EMOJI_PROCESSOR.replaceByAlias(":grining: and :smiley_cats: at 12:30:45", 1));
+        Assertions.assertEquals(
+            ":grining: at 12:30:45",
+            EMOJI_PROCESSOR.replaceByAlias(":grining: at 12:30:45"));
+    }
+
+    @Test
+    public void queryEmoji() {
+        String text = "\u2702\uFE0F Copy and \uD83D\uDCCB Paste Emoji \uD83D\uDC4D\uD83C\uDFFB";
+        Assertions.assertTrue(EMOJI_PROCESSOR.containsEmoji(text));
+        Assertions.assertFalse(EMOJI_PROCESSOR.containsEmoji("Copy and Paste"));
+        Assertions.assertFalse(EMOJI_PROCESSOR.containsEmoji(null));
+
+        Assertions.assertEquals(EMOJI_PROCESSOR.extract(text).size(), EMOJI_PROCESSOR.countEmoji(text));
+        Assertions.assertEquals(0, EMOJI_PROCESSOR.countEmoji(""));
+
+        Assertions.assertEquals(0, EMOJI_PROCESSOR.indexOfEmoji(text, 0));
+        Assertions.assertEquals(text.indexOf("\uD83D\uDCCB"), EMOJI_PROCESSOR.indexOfEmoji(text, 1));
+        Assertions.assertEquals(text.indexOf("\uD83D\uDC4D"), EMOJI_PROCESSOR.indexOfEmoji(text, text.indexOf("Paste")));
+        Assertions.assertEquals(-1, EMOJI_PROCESSOR.indexOfEmoji(text, text.length()));
+
+        Assertions.assertTrue(EMOJI_PROCESSOR.isEmojiOnly("\uD83D\uDC4B\uD83C\uDFFB \uD83D\uDE00\n"));
+        Assertions.assertTrue(EMOJI_PROCESSOR.isEmojiOnly(
+            "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67\u200D\uD83D\uDC66"));
+        Assertions.assertFalse(EMOJI_PROCESSOR.isEmojiOnly("\uD83D\uDC4B hi"));
+        Assertions.assertFalse(EMOJI_PROCESSOR.isEmojiOnly("  "));
+    }
+
+    @Test
+    public void extractPartialSequences() {
+        // a leading orphan tone is not attached to the following emoji
+        assertExtracted("\uD83C\uDFFB\uD83C\uDFCA", "\uD83C\uDFCA", 2, 4);
+        // a partial ZWJ sequence yields each visible component
+        assertExtracted("\uD83D\uDC68\u200D\uD83D\uDC69", "\uD83D\uDC68", 0, 2, "\uD83D\uDC69", 3, 5);
+        assertExtracted("x\uD83D\uDC68\u200D\uD83D\uDC69\u200D y", "\uD83D\uDC68", 1, 3, "\uD83D\uDC69", 4, 6);
+    }
+
+    /**
+     * @param expected emoji, start and end of each expected match
+     */
+    private static void assertExtracted(String text, Object... expected) {
+        List<ExtractedEmoji> extracts = EMOJI_PROCESSOR.extract(text);
+        Assertions.assertEquals(expected.length / 3, extracts.size(), text);
+        for (int i = 0; i < extracts.size(); i++) {
+            ExtractedEmoji extracted = extracts.get(i);
+            Assertions.assertEquals(expected[i * 3], extracted.getEmoji());
+            Assertions.assertEquals(expected[i * 3 + 1], extracted.getStart());
+            Assertions.assertEquals(expected[i * 3 + 2], extracted.getEnd());
+        }
+
+        // every extraction API agrees
+        Assertions.assertEquals(extracts, EMOJI_PROCESSOR.extract(text, new ExtractionResult()).toList());
+        Assertions.assertEquals(extracts, EMOJI_PROCESSOR.emojis(text).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void streamEmoji() {
+        String text = "\u2702\uFE0F Copy and \uD83D\uDCCB Paste Emoji \uD83D\uDC4D\uD83C\uDFFB";
+        Assertions.assertEquals(EMOJI_PROCESSOR.extract(text), EMOJI_PROCESSOR.emojis(text).collect(Collectors.toList()));
+        Assertions.assertEquals(
+            "\uD83D\uDCCB",
+            EMOJI_PROCESSOR.emojis(text).skip(1).findFirst().map(ExtractedEmoji::getEmoji).orElseThrow());
+        Assertions.assertEquals(0, EMOJI_PROCESSOR.emojis(null).count());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("family: \uD83D\uDC68\uD83C\uDFFB\u200D\uD83D\uDC69\uD83C\uDFFB\u200D")
+                .append("\uD83D\uDC67\uD83C\uDFFF\u200D\uD83D\uDC66\uD83C\uDFFF\uD83D\uDC4B\uD83D\uDC4B\uD83C\uDFFC, ")
+                .append(i);
+        }
+
+        List<ExtractedEmoji> sequential = EMOJI_PROCESSOR.extract(sb.toString());
+        List<ExtractedEmoji> parallel = EMOJI_PROCESSOR.emojis(sb).parallel().collect(Collectors.toList());
+        Assertions.assertEquals(6000, parallel.size());
+        Assertions.assertEquals(sequential, parallel);
+        for (int i = 0; i < parallel.size(); i++) {
+            Assertions.assertEquals(sequential.get(i).getEmoji(), parallel.get(i).getEmoji());
+        }
+    }
+
+    @Test
+    public void extractEmojiIntoResult() {
+        String text = "family: \uD83D\uDC68\uD83C\uDFFB\u200D\uD83D\uDC69\uD83C\uDFFB\u200D" +
+            "\uD83D\uDC67\uD83C\uDFFF\u200D\uD83D\uDC66\uD83C\uDFFF and \uD83D\uDC4B";
+        ExtractionResult result = new ExtractionResult(1);
+        Assertions.assertSame(result, EMOJI_PROCESSOR.extract(text, result));
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertEquals(8, result.getStart(0));
+        Assertions.assertEquals(text.indexOf(" and"), result.getEnd(0));
+        Assertions.assertEquals(
+            "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67\u200D\uD83D\uDC66",
+            result.getDetail(0).getEmoji());
+        Assertions.assertEquals("\uD83D\uDC4B", result.getEmoji(1));
+        Assertions.assertEquals(EMOJI_PROCESSOR.extract(text), result.toList());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> result.getStart(2));
+
+        EMOJI_PROCESSOR.extract("no emoji", result);
+        Assertions.assertTrue(result.isEmpty());
+        EMOJI_PROCESSOR.extract("\uD83D\uDE00", result);
+        Assertions.assertEquals("\uD83D\uDE00", result.get(0).getEmoji());
+        result.reset();
+        Assertions.assertEquals(0, result.size());
+    }
+
+    @Test
+    public void truncateEmoji() {
+        // man: light, woman: light, girl: dark, boy: dark
+        String family = "\uD83D\uDC68\uD83C\uDFFB\u200D\uD83D\uDC69\uD83C\uDFFB\u200D" +
+            "\uD83D\uDC67\uD83C\uDFFF\u200D\uD83D\uDC66\uD83C\uDFFF";
+        String text = "hi " + family + "\uD83D\uDC4B\uD83C\uDFFB!";
+
+        Assertions.assertEquals(6, EMOJI_PROCESSOR.displayLength(text));
+        Assertions.assertEquals(0, EMOJI_PROCESSOR.displayLength(""));
+        Assertions.assertEquals(2, EMOJI_PROCESSOR.displayLength("\uD835\uDC9Ca"));
+        // a combining mark belongs to the preceding character or emoji
+        Assertions.assertEquals(4, EMOJI_PROCESSOR.displayLength("cafe\u0301"));
+        Assertions.assertEquals(2, EMOJI_PROCESSOR.displayLength("e\u0301\u0323\uD83D\uDE00\u20E0"));
+
+        Assertions.assertEquals(text, EMOJI_PROCESSOR.truncate(text, text.length()));
+        Assertions.assertEquals("hi ", EMOJI_PROCESSOR.truncate(text, 3 + family.length() - 1));
+        Assertions.assertEquals("hi " + family, EMOJI_PROCESSOR.truncate(text, 3 + family.length() + 3));
+        Assertions.assertEquals("a", EMOJI_PROCESSOR.truncate("a\uD835\uDC9C", 2));
+
+        int familyBytes = family.getBytes(StandardCharsets.UTF_8).length;
+        Assertions.assertEquals("hi ", EMOJI_PROCESSOR.truncateUtf8(text, 3 + familyBytes - 1));
+        Assertions.assertEquals("hi " + family, EMOJI_PROCESSOR.truncateUtf8(text, 3 + familyBytes + 7));
+        Assertions.assertEquals(text, EMOJI_PROCESSOR.truncateUtf8(text, text.getBytes(StandardCharsets.UTF_8).length));
+        Assertions.assertEquals("\u00e9", EMOJI_PROCESSOR.truncateUtf8("\u00e9\u4e2d", 4));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EMOJI_PROCESSOR.truncate(text, -1));
+    }
+
+    @Test
+    public void reloadUnderConcurrentReads() throws Exception {
+        List<Emoji> withoutWave = EMOJIS.stream()
+            .filter(emoji -> !emoji.getAliases().contains("wave"))
+            .collect(Collectors.toList());
+        ReloadableEmojiProcessor processor = new ReloadableEmojiProcessor(EMOJIS);
+        String text = "\uD83D\uDC4B\uD83C\uDFFB :wave: \uD83D\uDE00";
+
+        int readers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(readers);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    while (running.get()) {
+                        try {
+                            List<ExtractedEmoji> extracts = processor.extract(text);
+                            String replaced = processor.replaceByAlias(text);
+                            Assertions.assertTrue(extracts.size() == 2 || extracts.size() == 1);
+                            Assertions.assertEquals("\uD83D\uDE00", extracts.get(extracts.size() - 1).getEmoji());
+                            Assertions.assertTrue(replaced.contains(":wave:") || replaced.contains(" \uD83D\uDC4B "));
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                            return;
+                        }
+                    }
+                }));
+            }
+
+            started.await();
+            for (int i = 0; i < 20; i++) {
+                processor.reloadAsync(i % 2 == 0 ? withoutWave : EMOJIS, executor).get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals(i % 2 == 0 ? 1 : 2, processor.extract(text).size());
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+        }
+
+        Assertions.assertNull(failure.get());
+        Assertions.assertEquals(EMOJIS.size(), processor.getEmojis().size());
+        Assertions.assertTrue(processor.findByAlias("wave").isPresent());
+    }
+
+    @Test
+    public void registerCustomEmoji() {
+        ReloadableEmojiProcessor processor = new ReloadableEmojiProcessor(EMOJIS);
+        Emoji parrot = new Emoji("\uDB80\uDC00", Collections.singletonList("party_parrot"), Collections.singletonList("parrot"), false);
+        String text = "a\uDB80\uDC00b :party_parrot: \uD83D\uDE00";
+
+        processor.register(parrot);
+        List<ExtractedEmoji> extracts = processor.extract(text);
+        Assertions.assertEquals(2, extracts.size());
+        Assertions.assertSame(parrot, extracts.get(0).getDetail());
+        Assertions.assertEquals(1, extracts.get(0).getStart());
+        Assertions.assertTrue(processor.isEmoji("\uDB80\uDC00"));
+        Assertions.assertSame(parrot, processor.findByAlias("party_parrot").orElse(null));
+        Assertions.assertSame(parrot, processor.findByAliasFuzzy("party_parot", 1).orElse(null));
+        Assertions.assertEquals(Collections.singletonList(parrot), processor.suggest("party_", 5));
+        Assertions.assertEquals("a\uDB80\uDC00b \uDB80\uDC00 \uD83D\uDE00", processor.replaceByAlias(text));
+        Assertions.assertEquals(EMOJIS.size() + 1, processor.getEmojis().size());
+
+        // replace an existing emoji
+        Emoji wave = processor.findByAlias("wave").orElseThrow(IllegalStateException::new);
+        Emoji hello = new Emoji(wave.getEmoji(), Collections.singletonList("hello"), Collections.emptyList(), true);
+        processor.register(hello);
+        Assertions.assertFalse(processor.findByAlias("wave").isPresent());
+        Assertions.assertSame(hello, processor.findByUnicode("\uD83D\uDC4B\uD83C\uDFFB").orElse(null));
+        Assertions.assertEquals("\uD83D\uDC4B\uD83C\uDFFD", processor.applySkinTone(wave.getEmoji(), SkinTone.MEDIUM));
+        Assertions.assertEquals(EMOJIS.size() + 1, processor.getEmojis().size());
+
+        Assertions.assertTrue(processor.unregister(parrot));
+        Assertions.assertFalse(processor.unregister(parrot));
+        Assertions.assertEquals(1, processor.extract(text).size());
+        Assertions.assertFalse(processor.findByAlias("party_parrot").isPresent());
+        Assertions.assertTrue(processor.suggest("party_", 5).isEmpty());
+        Assertions.assertEquals(EMOJIS.size(), processor.getEmojis().size());
+
+        // a histogram of the old snapshot cannot be used with the new one
+        EmojiHistogram histogram = processor.createHistogram(false);
+        processor.register(parrot);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> processor.countEmojis(text, histogram));
+
+        // register/unregister churn reassigns ids once dead ids outnumber live ones
+        for (int i = 0; i < 10_000; i++) {
+            processor.unregister(parrot);
+            processor.register(parrot);
+        }
+        Assertions.assertTrue(processor.index().getTrieTree().size() <= 2 * (EMOJIS.size() + 1) + EmojiIndex.COMPACT_THRESHOLD);
+        Assertions.assertEquals(EMOJIS.size() + 1, processor.getEmojis().size());
+        Assertions.assertSame(parrot, processor.findByAlias("party_parrot").orElse(null));
+        Assertions.assertSame(hello, processor.findByUnicode(wave.getEmoji()).orElse(null));
+        Assertions.assertEquals(2, processor.extract(text).size());
+    }
+
+    @Test
+    public void overlayTenantEmoji() {
+        Emoji parrot = new Emoji("\uDB80\uDC00", Collections.singletonList("party_parrot"), Collections.emptyList(), false);
+        Emoji grinning = EMOJI_PROCESSOR.findByAlias("grinning").orElseThrow(IllegalStateException::new);
+        Emoji yay = new Emoji(grinning.getEmoji(), Arrays.asList("grinning", "yay"), Collections.emptyList(), false);
+        EmojiProcessor tenant = EMOJI_PROCESSOR.overlay(Arrays.asList(parrot, yay));
+        EmojiProcessor other = EMOJI_PROCESSOR.overlay(Collections.singletonList(
+            new Emoji("\uDB80\uDC01", Collections.singletonList("party_parrot"), Collections.emptyList(), false)));
+        String text = ":party_parrot: :yay: :wave:";
+
+        Assertions.assertEquals("\uDB80\uDC00 \uD83D\uDE00 \uD83D\uDC4B", tenant.replaceByAlias(text));
+        Assertions.assertEquals("\uDB80\uDC01 :yay: \uD83D\uDC4B", other.replaceByAlias(text));
+        Assertions.assertEquals(":party_parrot: :yay: \uD83D\uDC4B", EMOJI_PROCESSOR.replaceByAlias(text));
+
+        Assertions.assertSame(yay, tenant.findByUnicode("\uD83D\uDE00").orElse(null));
+        Assertions.assertSame(grinning, EMOJI_PROCESSOR.findByUnicode("\uD83D\uDE00").orElse(null));
+        Assertions.assertEquals(2, tenant.extract("\uDB80\uDC00\uD83D\uDE00").size());
+        Assertions.assertEquals(1, other.extract("\uDB80\uDC00\uD83D\uDE00").size());
+        Assertions.assertFalse(EMOJI_PROCESSOR.isEmoji("\uDB80\uDC00"));
+
+        // overlays copy the character bitmaps instead of writing into the base
+        Assertions.assertTrue(tenant.index().getTrieTree().mayStart('\uDB80'));
+        Assertions.assertFalse(EMOJI_PROCESSOR.index().getTrieTree().mayStart('\uDB80'));
+    }
+
+    @Test
+    public void cacheShortInputs() {
+        List<Emoji> withoutWave = EMOJIS.stream()
+            .filter(emoji -> !emoji.getAliases().contains("wave"))
+            .collect(Collectors.toList());
+        ReloadableEmojiProcessor reloadable = new ReloadableEmojiProcessor(EMOJIS);
+        CachingEmojiProcessor processor = new CachingEmojiProcessor(reloadable, 2, 16);
+        String text = "lol \uD83D\uDE02";
+
+        List<ExtractedEmoji> extracts = processor.extract(text);
+        Assertions.assertSame(extracts, processor.extract(text));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> extracts.add(null));
+        Assertions.assertEquals("\uD83D\uDC4B", processor.replaceByAlias(":wave:"));
+        Assertions.assertEquals("\uD83D\uDC4B", processor.replaceByAlias(":wave:"));
+        Assertions.assertTrue(processor.isEmoji("\uD83D\uDC4B"));
+        Assertions.assertEquals(2, processor.getHitCount());
+        Assertions.assertEquals(3, processor.getMissCount());
+
+        // strings longer than the maximum length bypass the cache
+        processor.extract("a long message \uD83D\uDE02\uD83D\uDE02");
+        Assertions.assertEquals(3, processor.getMissCount());
+
+        // eviction
+        processor.extract("\uD83D\uDE00");
+        processor.extract("\uD83D\uDE01");
+        processor.extract("\uD83D\uDE03");
+        Assertions.assertEquals(1, processor.extract("\uD83D\uDE00").size());
+
+        // cached results are invalidated by a reload
+        reloadable.reload(withoutWave);
+        Assertions.assertEquals(":wave:", processor.replaceByAlias(":wave:"));
+        Assertions.assertFalse(processor.isEmoji("\uD83D\uDC4B"));
+    }
+
+    @Test
+    public void clockCacheStaysBoundedUnderContention() throws Exception {
+        int capacity = 64;
+        ClockCache<String> cache = new ClockCache<>(capacity);
+        Object version = new Object();
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch started = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < writers; i++) {
+                int seed = i;
+                futures.add(executor.submit(() -> {
+                    started.await();
+                    Random random = new Random(seed);
+                    for (int n = 0; n < 50_000; n++) {
+                        // a small key space makes threads race on the same keys and slots
+                        String key = Integer.toString(random.nextInt(256));
+                        if (cache.get(key, version) == null) {
+                            cache.put(key, version, key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            started.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertTrue(cache.size() <= capacity, () -> "size " + cache.size());
+        cache.put("a", version, "a");
+        cache.put("a", version, "b");
+        Assertions.assertEquals("a", cache.get("a", version));
+        // a newer version replaces the stale entry under the same key
+        Object next = new Object();
+        cache.put("a", next, "c");
+        Assertions.assertEquals("c", cache.get("a", next));
+        Assertions.assertNull(cache.get("a", version));
+        Assertions.assertTrue(cache.size() <= capacity);
+
+        // the replacement reuses the stale entry's slot instead of evicting another key
+        ClockCache<String> small = new ClockCache<>(2);
+        small.put("a", version, "a");
+        small.put("b", version, "b");
+        Assertions.assertEquals("b", small.get("b", version));
+        small.put("b", next, "c");
+        Assertions.assertEquals("a", small.get("a", version));
+        Assertions.assertEquals("c", small.get("b", next));
+        Assertions.assertEquals(2, small.size());
+    }
+
+    @Test
+    public void processPipeline() throws Exception {
+        String message = "hi :wave: \uD83D\uDC4D\uD83C\uDFFF :nope: \uD83D\uDE00!";
+        EmojiPipeline pipeline = EMOJI_PROCESSOR.pipeline().expandAliases().skinTone(SkinTone.LIGHT);
+
+        StringBuilder text = new StringBuilder();
+        StringBuilder stripped = new StringBuilder();
+        List<ExtractedEmoji> extracts = new ArrayList<>();
+        pipeline.process(message, text, stripped, extracts::add);
+
+        String expected = "hi \uD83D\uDC4B\uD83C\uDFFB \uD83D\uDC4D\uD83C\uDFFB :nope: \uD83D\uDE00!";
+        Assertions.assertEquals(expected, text.toString());
+        Assertions.assertEquals("hi   :nope: !", stripped.toString());
+        Assertions.assertEquals(EMOJI_PROCESSOR.extract(expected), extracts);
+
+        // same result as calling each method separately
+        Assertions.assertEquals(
+            EMOJI_PROCESSOR.replaceByAlias(message),
+            EMOJI_PROCESSOR.pipeline().expandAliases().process(message));
+        Assertions.assertEquals(
+            "hi :wave: \uD83D\uDC4D :nope: \uD83D\uDE00!",
+            EMOJI_PROCESSOR.pipeline().removeSkinTone().process(message));
+        Assertions.assertEquals(message, EMOJI_PROCESSOR.pipeline().process(message));
+
+        // an existing pipeline sees the reloaded snapshot
+        ReloadableEmojiProcessor reloadable = new ReloadableEmojiProcessor(EMOJIS);
+        EmojiPipeline toned = reloadable.pipeline().skinTone(SkinTone.DARK);
+        Assertions.assertEquals("\uD83D\uDC4B\uD83C\uDFFF", toned.process("\uD83D\uDC4B"));
+        Emoji wave = reloadable.findByAlias("wave").orElseThrow(IllegalStateException::new);
+        reloadable.register(new Emoji(wave.getEmoji(), wave.getAliases(), wave.getTags(), false));
+        Assertions.assertEquals("\uD83D\uDC4B", toned.process("\uD83D\uDC4B"));
+        reloadable.reload(EMOJIS);
+        Assertions.assertEquals("\uD83D\uDC4B\uD83C\uDFFF", toned.process("\uD83D\uDC4B"));
+    }
+
+    @Test
+    public void renderEmoji() {
+        EmojiRenderer renderer = EmojiRenderer.image("/emoji/", ".svg");
+        Assertions.assertEquals(
+            "&lt;b&gt;&quot;hi&quot; &amp; <img class=\"emoji\" src=\"/emoji/1f44b-1f3fb.svg\" alt=\"\uD83D\uDC4B\uD83C\uDFFB\">"
+                + "<img class=\"emoji\" src=\"/emoji/1f600.svg\" alt=\"\uD83D\uDE00\">!",
+            EMOJI_PROCESSOR.render("<b>\"hi\" & \uD83D\uDC4B\uD83C\uDFFB\uD83D\uDE00!", renderer));
+        Assertions.assertEquals("plain", EMOJI_PROCESSOR.render("plain", renderer));
+
+        Emoji family = EMOJI_PROCESSOR.findByUnicode("\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67").orElseThrow(IllegalStateException::new);
+        Assertions.assertEquals("1f468-200d-1f469-200d-1f467", family.getHexSlug());
+        Assertions.assertSame(family.getHexSlug(), family.getHexSlug());
+    }
+
+    @Test
+    public void encodeEmoji() throws Exception {
+        EmojiCodec html = EMOJI_PROCESSOR.codec(EmojiCodec.Format.HTML);
+        EmojiCodec unicode = EMOJI_PROCESSOR.codec(EmojiCodec.Format.UNICODE);
+        // the last character is a supplementary character outside any emoji
+        String text = "hi \uD83D\uDC4B\uD83C\uDFFB &#x41; \\u{41} \uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67 \uD800\uDF48";
+
+        String encoded = html.encode(text);
+        Assertions.assertEquals(
+            "hi &#x1F44B;&#x1F3FB; &#x26;#x41; \\u{41} &#x1F468;&#x200D;&#x1F469;&#x200D;&#x1F467; \uD800\uDF48",
+            encoded);
+        Assertions.assertEquals(text, html.decode(encoded));
+        Assertions.assertEquals(
+            "hi \\u{1F44B}\\u{1F3FB} &#x41; \\u{5C}u{41} \\u{1F468}\\u{200D}\\u{1F469}\\u{200D}\\u{1F467} \uD800\uDF48",
+            unicode.encode(text));
+        Assertions.assertEquals(text, unicode.decode(unicode.encode(text)));
+        Assertions.assertEquals("&#xZZ; &#x110000;", html.decode("&#xZZ; &#x110000;"));
+
+        // across the buffer boundary
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append(i).append(" \uD83D\uDC4B\uD83C\uDFFB &#x").append(i).append(';');
+        }
+        String large = sb.toString();
+        StringBuilder out = new StringBuilder();
+        html.encode(new StringReader(large), out);
+        Assertions.assertEquals(html.encode(large), out.toString());
+
+        StringBuilder decoded = new StringBuilder();
+        html.decode(new StringReader(out.toString()), decoded);
+        Assertions.assertEquals(large, decoded.toString());
+    }
+
+    @Test
+    public void sanitizeEmoji() throws Exception {
+        String valid = "\uD83D\uDC68\uD83C\uDFFB\u200D\uD83D\uDC69\u200D\uD83D\uDC67 \uD83D\uDC4B\uD83C\uDFFF";
+        Assertions.assertEquals(valid, EMOJI_PROCESSOR.sanitize(valid, SanitizePolicy.REMOVE));
+
+        // skin tones and ZWJs outside any emoji, and unpaired surrogates
+        String broken = "a\uD83C\uDFFB\uD83C\uDFFC\u200D b\u200D\u200D \uD83D \uDC4B \uD83D\uDE00\u200D";
+        StringBuilder out = new StringBuilder();
+        Assertions.assertEquals(8, EMOJI_PROCESSOR.sanitize(broken, out, SanitizePolicy.REMOVE));
+        Assertions.assertEquals("a b   \uD83D\uDE00", out.toString());
+        Assertions.assertEquals(
+            "a\uFFFD\uFFFD\uFFFD b\uFFFD\uFFFD \uFFFD \uFFFD \uD83D\uDE00\uFFFD",
+            EMOJI_PROCESSOR.sanitize(broken, SanitizePolicy.REPLACE));
+
+        // a ZWJ joining letters is kept
+        String devanagari = "\u0915\u094D\u200D\u0937";
+        Assertions.assertEquals(devanagari, EMOJI_PROCESSOR.sanitize(devanagari, SanitizePolicy.REMOVE));
+
+        // a long run of skin tones
+        StringBuilder tones = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            tones.append(SkinTone.DARK.getUnicode());
+        }
+        Assertions.assertEquals("", EMOJI_PROCESSOR.sanitize(tones, SanitizePolicy.REMOVE));
+
+        // only the first tone after a skinnable emoji belongs to it
+        String run = "\uD83D\uDC4B\uD83C\uDFFB\uD83C\uDFFB\uD83C\uDFFB\uD83C\uDFFB\uD83C\uDFFB";
+        out.setLength(0);
+        Assertions.assertEquals(4, EMOJI_PROCESSOR.sanitize(run, out, SanitizePolicy.REMOVE));
+        Assertions.assertEquals("\uD83D\uDC4B\uD83C\uDFFB", out.toString());
+        Assertions.assertEquals(
+            "\uD83D\uDC4B\uD83C\uDFFB\uFFFD\uFFFD\uFFFD\uFFFD",
+            EMOJI_PROCESSOR.sanitize(run, SanitizePolicy.REPLACE));
+        Assertions.assertFalse(EMOJI_PROCESSOR.isEmoji("\uD83D\uDC4B\uD83C\uDFFB\uD83C\uDFFB"));
+        Assertions.assertTrue(EMOJI_PROCESSOR.isEmoji("\uD83D\uDC4B\uD83C\uDFFB"));
+
+        // a tone after an emoji that cannot be skinned is orphaned
+        String grinning = "\uD83D\uDE00\uD83C\uDFFB";
+        Assertions.assertEquals("\uD83D\uDE00", EMOJI_PROCESSOR.sanitize(grinning, SanitizePolicy.REMOVE));
+        Assertions.assertEquals("\uD83D\uDE00\uFFFD", EMOJI_PROCESSOR.sanitize(grinning, SanitizePolicy.REPLACE));
+        Assertions.assertFalse(EMOJI_PROCESSOR.isEmoji(grinning));
+        List<ExtractedEmoji> results = EMOJI_PROCESSOR.extract(grinning);
+        Assertions.assertEquals(1, results.size());
+        Assertions.assertEquals("\uD83D\uDE00", results.get(0).getEmoji());
+        Assertions.assertEquals(2, results.get(0).getEnd());
+
+        // tones inside a skinnable ZWJ sequence are still kept
+        Assertions.assertTrue(EMOJI_PROCESSOR.isEmoji("\uD83D\uDC68\uD83C\uDFFB\u200D\uD83D\uDC69\u200D\uD83D\uDC67"));
+    }
+
+    @Test
+    public void tokenizeEmoji() {
+        String text = "Hello, w\u00F6rld\uD83D\uDC4B\uD83C\uDFFB h2o! \uD83D\uDE00";
+        EmojiTokenizer tokenizer = EMOJI_PROCESSOR.tokenizer().reset(text);
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.next()) {
+            tokens.add(tokenizer.getType() + ":" + text.substring(tokenizer.getStart(), tokenizer.getEnd()));
+        }
+
+        Assertions.assertEquals(Arrays.asList(
+            "WORD:Hello", "WORD:w\u00F6rld", "EMOJI:\uD83D\uDC4B\uD83C\uDFFB", "WORD:h2o", "EMOJI:\uD83D\uDE00"), tokens);
+
+        tokenizer.reset("\uD83D\uDC4B\uD83C\uDFFB");
+        Assertions.assertTrue(tokenizer.next());
+        Emoji wave = EMOJI_PROCESSOR.findByAlias("wave").orElseThrow(IllegalStateException::new);
+        Assertions.assertSame(wave, tokenizer.getEmoji());
+        Assertions.assertEquals(wave.getTags().size(), tokenizer.getSynonymCount());
+        for (int i = 0; i < tokenizer.getSynonymCount(); i++) {
+            Assertions.assertSame(wave.getTags().get(i).intern(), tokenizer.getSynonym(i));
+        }
+        Assertions.assertFalse(tokenizer.next());
+        Assertions.assertNull(tokenizer.getType());
+    }
+
+    @Test
+    public void extractChunks() throws Exception {
+        String text = "hi \uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67 1\uFE0F\u20E3\uD83D\uDC4B\uD83C\uDFFB\uD83D\uDE00 end \uD83D\uDC4B";
+        List<ExtractedEmoji> expected = EMOJI_PROCESSOR.extract(text);
+
+        // split at every position
+        for (int split = 0; split <= text.length(); split++) {
+            List<ExtractedEmoji> extracts = new ArrayList<>();
+            StreamingEmojiExtractor extractor = EMOJI_PROCESSOR.streamingExtractor();
+            extractor.feed(text.substring(0, split), extracts::add);
+            extractor.feed(text.substring(split), extracts::add);
+            extractor.finish(extracts::add);
+            Assertions.assertEquals(expected, extracts);
+        }
+
+        // feed one char at a time, a chunk ending with a space is emitted immediately
+        List<ExtractedEmoji> extracts = new ArrayList<>();
+        StreamingEmojiExtractor extractor = EMOJI_PROCESSOR.streamingExtractor();
+        for (int i = 0; i < text.length(); i++) {
+            extractor.feed(text.subSequence(i, i + 1), extracts::add);
+        }
+        Assertions.assertEquals(expected.size() - 1, extracts.size());
+        extractor.finish(extracts::add);
+        Assertions.assertEquals(expected, extracts);
+        Assertions.assertEquals(text.length(), extractor.getOffset());
+
+        // request one emoji at a time
+        List<ExtractedEmoji> published = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch completed = new CountDownLatch(1);
+        EmojiFlowProcessor processor = new EmojiFlowProcessor(EMOJI_PROCESSOR);
+        processor.subscribe(new Flow.Subscriber<ExtractedEmoji>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ExtractedEmoji item) {
+                published.add(item);
+                this.subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {}
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        try (SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int i = 0; i < text.length(); i += 5) {
+                publisher.submit(text.substring(i, Math.min(text.length(), i + 5)));
+            }
+        }
+        Assertions.assertTrue(completed.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(expected, published);
+
+        // a non-positive request cancels upstream before the error is signalled
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        AtomicBoolean cancelledBeforeError = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        EmojiFlowProcessor rejecting = new EmojiFlowProcessor(EMOJI_PROCESSOR);
+        rejecting.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {
+                upstreamCancelled.set(true);
+            }
+        });
+        rejecting.subscribe(new Flow.Subscriber<ExtractedEmoji>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(ExtractedEmoji item) {}
+
+            @Override
+            public void onError(Throwable throwable) {
+                cancelledBeforeError.set(upstreamCancelled.get());
+                failure.set(throwable);
+            }
+
+            @Override
+            public void onComplete() {}
+        });
+        Assertions.assertTrue(upstreamCancelled.get());
+        Assertions.assertTrue(cancelledBeforeError.get());
+        Assertions.assertTrue(failure.get() instanceof IllegalArgumentException);
+
+        // a non-positive request after the upstream completed still fails instead of completing
+        AtomicReference<Flow.Subscription> downstream = new AtomicReference<>();
+        AtomicReference<Throwable> lateFailure = new AtomicReference<>();
+        AtomicBoolean completedLate = new AtomicBoolean();
+        EmojiFlowProcessor late = new EmojiFlowProcessor(EMOJI_PROCESSOR);
+        late.subscribe(new Flow.Subscriber<ExtractedEmoji>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                downstream.set(subscription);
+            }
+
+            @Override
+            public void onNext(ExtractedEmoji item) {}
+
+            @Override
+            public void onError(Throwable throwable) {
+                lateFailure.set(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completedLate.set(true);
+            }
+        });
+        late.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {}
+        });
+        late.onNext("\uD83D\uDE00 ");
+        late.onComplete();
+        downstream.get().request(0);
+        Assertions.assertTrue(lateFailure.get() instanceof IllegalArgumentException);
+        Assertions.assertFalse(completedLate.get());
+    }
+
+    @Test
+    public void viewByUnicodeVersion() {
+        // 👨‍🦰 was added in unicode 11.0, its component 👨 in 6.0
+        String text = "\uD83D\uDC68\u200D\uD83E\uDDB0 \uD83E\uDD73 \uD83D\uDE00";
+        EmojiProcessor legacy = EMOJI_PROCESSOR.viewUntilVersion("10.0");
+
+        Assertions.assertEquals(3, EMOJI_PROCESSOR.extract(text).size());
+        List<ExtractedEmoji> extracts = legacy.extract(text);
+        Assertions.assertEquals(2, extracts.size());
+        Assertions.assertEquals("\uD83D\uDC68", extracts.get(0).getEmoji());
+        Assertions.assertEquals("\uD83D\uDE00", extracts.get(1).getEmoji());
+
+        Assertions.assertFalse(legacy.isEmoji("\uD83E\uDD73"));
+        Assertions.assertFalse(legacy.findByAlias("partying_face").isPresent());
+        Assertions.assertTrue(legacy.suggest("partying", 5).isEmpty());
+        Assertions.assertEquals(":partying_face:", legacy.replaceByAlias(":partying_face:"));
+        Assertions.assertEquals("11.0", EMOJI_PROCESSOR.findByAlias("partying_face").map(Emoji::getUnicodeVersion).orElse(null));
+
+        EmojiProcessor smileys = legacy.view(emoji -> "Smileys & Emotion".equals(emoji.getCategory()));
+        Assertions.assertEquals(1, smileys.extract(text).size());
+        Assertions.assertTrue(smileys.suggest("s", 100).stream().allMatch(emoji -> "Smileys & Emotion".equals(emoji.getCategory())));
+        Assertions.assertEquals(16, smileys.suggest("s", 16).size());
+
+        // the view walks the shared index in rank order and skips hidden emoji
+        EmojiProcessor people = EMOJI_PROCESSOR.view(emoji -> "People & Body".equals(emoji.getCategory()));
+        List<Emoji> expected = rankByPrefix(EMOJIS, "s").stream()
+            .filter(emoji -> "People & Body".equals(emoji.getCategory()))
+            .collect(Collectors.toList());
+        Assertions.assertTrue(expected.size() > 16);
+        Assertions.assertEquals(expected, people.suggest("s", 1000));
+        Assertions.assertEquals(expected.subList(0, 5), people.suggest("s", 5));
+        Assertions.assertEquals(expected.subList(0, 17), people.suggest("s", 17));
+    }
 }